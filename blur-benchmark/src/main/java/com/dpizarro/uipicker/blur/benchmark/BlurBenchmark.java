@@ -0,0 +1,119 @@
+package com.dpizarro.uipicker.blur.benchmark;
+
+import com.dpizarro.uipicker.blur.BlurBuffers;
+import com.dpizarro.uipicker.blur.BoxBlur;
+import com.dpizarro.uipicker.blur.DualKawaseBlur;
+import com.dpizarro.uipicker.blur.GaussianBlur;
+import com.dpizarro.uipicker.blur.StackBlur;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Time of one blur of a downscaled screen with each kernel, on one thread. The pixels are
+ * blurred in place again and again, the kernels cost the same whatever the content.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BlurBenchmark {
+
+    /**
+     * Screen size, WIDTHxHEIGHT
+     */
+    @Param({"720x1280", "1080x1920", "1440x2560"})
+    String screen;
+
+    /**
+     * Downscale factor applied to the screen before blurring, the library's default is 5
+     */
+    @Param({"2", "3", "5"})
+    float downscale;
+
+    @Param({"1", "5", "10", "15", "20", "25"})
+    int radius;
+
+    private int mWidth;
+    private int mHeight;
+    private int[] mPixels;
+    private short[] mPixels565;
+    private final BlurBuffers mBuffers = new BlurBuffers();
+
+    @Setup
+    public void setUp() {
+        int[] size = Screens.parseSize(screen);
+        mWidth = Screens.scaledSize(size[0], downscale);
+        mHeight = Screens.scaledSize(size[1], downscale);
+        mPixels = Screens.create(mWidth, mHeight, 0xff);
+        mPixels565 = Screens.to565(mPixels);
+        mBuffers.ensure(mWidth, mHeight);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mBuffers.finish();
+    }
+
+    @Benchmark
+    public int[] stack() {
+        StackBlur.blur(mPixels, mWidth, mHeight, radius, mBuffers);
+        return mPixels;
+    }
+
+    @Benchmark
+    public short[] stack565() {
+        StackBlur.blur565(mPixels565, mWidth, mHeight, radius, mBuffers);
+        return mPixels565;
+    }
+
+    @Benchmark
+    public int[] box() {
+        BoxBlur.blur(mPixels, mWidth, mHeight, radius, mBuffers);
+        return mPixels;
+    }
+
+    @Benchmark
+    public int[] gaussian() {
+        GaussianBlur.blur(mPixels, mWidth, mHeight, radius, mBuffers);
+        return mPixels;
+    }
+
+    /**
+     * Also takes radius values above 25, e.g. -p radius=50,100,250
+     */
+    @Benchmark
+    public int[] dualKawase() {
+        DualKawaseBlur.blur(mPixels, mWidth, mHeight, radius, mBuffers);
+        return mPixels;
+    }
+}
@@ -0,0 +1,87 @@
+package com.dpizarro.uipicker.blur.benchmark;
+
+import java.util.Random;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Synthetic screens to blur: a vertical gradient like a toolbar and a background, with rows of
+ * small sharp blocks like text. Blurring cost doesn't depend on the content, but the same
+ * picture keeps results comparable between runs.
+ */
+final class Screens {
+
+    private Screens() {
+    }
+
+    /**
+     * @param screen size as WIDTHxHEIGHT, for example 1080x1920
+     * @return the width and the height
+     */
+    static int[] parseSize(String screen) {
+        int separator = screen.indexOf('x');
+        if (separator == -1) {
+            throw new IllegalArgumentException("Invalid screen size: " + screen);
+        }
+        return new int[]{Integer.parseInt(screen.substring(0, separator)),
+                Integer.parseInt(screen.substring(separator + 1))};
+    }
+
+    /**
+     * @param size   width or height of the screen
+     * @param factor the downscale factor, at least 1
+     * @return the size of the snapshot the library captures for the screen, at least 1
+     */
+    static int scaledSize(int size, float factor) {
+        return Math.max(1, (int) (size / factor));
+    }
+
+    /**
+     * @param width  width of the picture
+     * @param height height of the picture
+     * @param alpha  alpha of every pixel
+     * @return ARGB pixels, row by row
+     */
+    static int[] create(int width, int height, int alpha) {
+        Random random = new Random(42);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int shade = 255 * y / Math.max(1, height - 1);
+            boolean textRow = (y / 24) % 3 == 1;
+            for (int x = 0; x < width; x++) {
+                int color = (shade << 16) | ((255 - shade) << 8) | 0x80;
+                if (textRow && (x / 12) % 2 == 0 && random.nextInt(3) == 0) {
+                    color = random.nextInt(0x1000000);
+                }
+                pixels[y * width + x] = (alpha << 24) | color;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * @return the pixels converted to RGB_565
+     */
+    static short[] to565(int[] pixels) {
+        short[] result = new short[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int p = pixels[i];
+            result[i] = (short) ((((p >> 19) & 0x1f) << 11) | (((p >> 10) & 0x3f) << 5)
+                    | ((p >> 3) & 0x1f));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package com.dpizarro.uipicker.blur.benchmark;
+
+import com.dpizarro.uipicker.blur.BlurTint;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Time of a separate tint pass over a downscaled screen, what the library's own kernels save by
+ * writing the tint with their last pass. Opaque pixels are read from tables, translucent ones
+ * are computed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TintBenchmark {
+
+    /**
+     * Screen size, WIDTHxHEIGHT
+     */
+    @Param({"720x1280", "1080x1920", "1440x2560"})
+    String screen;
+
+    @Param({"2", "3", "5"})
+    float downscale;
+
+    /**
+     * Alpha of the pixels, the tint keeps it so every call takes the same path
+     */
+    @Param({"255", "128"})
+    int pixelAlpha;
+
+    private int[] mPixels;
+    private final BlurTint mTint = BlurTint.create(0x80336699, 255);
+
+    @Setup
+    public void setUp() {
+        int[] size = Screens.parseSize(screen);
+        mPixels = Screens.create(Screens.scaledSize(size[0], downscale),
+                Screens.scaledSize(size[1], downscale), pixelAlpha);
+    }
+
+    @Benchmark
+    public int[] tint() {
+        mTint.apply(mPixels, 0, mPixels.length);
+        return mPixels;
+    }
+}
@@ -0,0 +1,325 @@
+package com.dpizarro.uipicker.blur;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.CancellationException;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Scratch buffers of the blur kernels, with the tint to write and the cancellation flag of the
+ * running blur. One instance is used by one blur at a time; buffers grow to the largest image
+ * blurred and are reused by the next blurs.
+ */
+public class BlurBuffers {
+
+    /**
+     * Number of lines blurred between two checks of {@link BlurBuffers#checkCancelled()}.
+     */
+    public static final int CANCEL_CHECK_LINES = 32;
+
+    /**
+     * Buffers in use. Only touched by the thread running the blur.
+     */
+    private Buffers mBuffers;
+
+    /**
+     * Buffers handed back with {@link BlurBuffers#release()}. They are reused by the next blur
+     * unless the garbage collector needs the memory first.
+     */
+    private SoftReference<Buffers> mReleasedBuffers;
+
+    /**
+     * 'true' between {@link BlurBuffers#ensure(int, int)} and {@link BlurBuffers#finish()},
+     * while a kernel is reading the buffers.
+     */
+    private boolean mInUse;
+    private boolean mReleasePending;
+    private boolean mTrimPending;
+
+    /**
+     * Set from any thread when the result of the running blur is no longer wanted. The kernels
+     * poll it with {@link BlurBuffers#checkCancelled()}.
+     */
+    private volatile boolean mCancelled;
+
+    /**
+     * Filter color and alpha written by the engines with the last pass.
+     */
+    private BlurTint mTint;
+    private boolean mTintApplied;
+
+    /**
+     * Makes sure the scratch buffers can hold a blur of the given size. Buffers are created the
+     * first time an engine asks for them and only reallocated when they are too small, so
+     * repeated blurs of the same snapshot size don't allocate anything. Must be paired with
+     * {@link BlurBuffers#finish()}.
+     *
+     * @param width  width of the bitmap to blur
+     * @param height height of the bitmap to blur
+     */
+    public synchronized void ensure(int width, int height) {
+        if (mBuffers == null && mReleasedBuffers != null) {
+            mBuffers = mReleasedBuffers.get();
+            mReleasedBuffers = null;
+        }
+        if (mBuffers == null) {
+            mBuffers = new Buffers();
+        }
+        mBuffers.size = width * height;
+        mBuffers.width = width;
+        mBuffers.height = height;
+        mInUse = true;
+    }
+
+    /**
+     * The kernel has finished with the buffers. Applies any release or trim requested meanwhile.
+     */
+    public synchronized void finish() {
+        mInUse = false;
+        if (mTrimPending) {
+            trim();
+        } else if (mReleasePending) {
+            release();
+        }
+    }
+
+    /**
+     * Hands the buffers back. They stay available for the next blur while there is no memory
+     * pressure.
+     */
+    public synchronized void release() {
+        if (mInUse) {
+            mReleasePending = true;
+            return;
+        }
+        mReleasePending = false;
+        if (mBuffers != null) {
+            mReleasedBuffers = new SoftReference<Buffers>(mBuffers);
+            mBuffers = null;
+        }
+    }
+
+    /**
+     * Drops every buffer, used when the system asks us to trim memory.
+     */
+    public synchronized void trim() {
+        if (mInUse) {
+            mTrimPending = true;
+            return;
+        }
+        mTrimPending = false;
+        mReleasePending = false;
+        mBuffers = null;
+        mReleasedBuffers = null;
+    }
+
+    /**
+     * Sets the tint of the next blurs.
+     *
+     * @param tint the tint, null to leave the pixels as blurred
+     */
+    public void setTint(BlurTint tint) {
+        mTint = tint;
+    }
+
+    public BlurTint getTint() {
+        return mTint;
+    }
+
+    /**
+     * Called by an engine that writes the tint with its last pass.
+     *
+     * @return the tint to write, may be null
+     */
+    public BlurTint takeTint() {
+        mTintApplied = true;
+        return mTint;
+    }
+
+    public void resetTintApplied() {
+        mTintApplied = false;
+    }
+
+    public boolean isTintApplied() {
+        return mTintApplied;
+    }
+
+    /**
+     * Asks the blur running on these buffers to stop as soon as possible.
+     */
+    public void cancel() {
+        mCancelled = true;
+    }
+
+    /**
+     * Clears a previous {@link BlurBuffers#cancel()}, called before starting a new blur.
+     */
+    public void resetCancel() {
+        mCancelled = false;
+    }
+
+    /**
+     * Called by the kernels between groups of lines.
+     *
+     * @throws CancellationException if the blur was cancelled
+     */
+    public void checkCancelled() {
+        if (mCancelled) {
+            throw new CancellationException("Blur cancelled");
+        }
+    }
+
+    /**
+     * @return a buffer of width * height pixels to read the bitmap into
+     */
+    public int[] getPixels() {
+        Buffers buffers = mBuffers;
+        if (buffers.pixels == null || buffers.pixels.length < buffers.size) {
+            buffers.pixels = new int[buffers.size];
+        }
+        return buffers.pixels;
+    }
+
+    /**
+     * @return a buffer of width * height RGB_565 pixels, see {@link StackBlur#blur565}
+     */
+    public short[] getPixels565() {
+        Buffers buffers = mBuffers;
+        if (buffers.pixels565 == null || buffers.pixels565.length < buffers.size) {
+            buffers.pixels565 = new short[buffers.size];
+        }
+        return buffers.pixels565;
+    }
+
+    /**
+     * @return a buffer of width * height, used by the box and gaussian blurs as the intermediate
+     * buffer between passes
+     */
+    public int[] getScratch() {
+        Buffers buffers = mBuffers;
+        if (buffers.scratch == null || buffers.scratch.length < buffers.size) {
+            buffers.scratch = new int[buffers.size];
+        }
+        return buffers.scratch;
+    }
+
+    /**
+     * @return a buffer as long as the width of the bitmap
+     */
+    public int[] getVminX() {
+        Buffers buffers = mBuffers;
+        if (buffers.vminX == null || buffers.vminX.length < buffers.width) {
+            buffers.vminX = new int[buffers.width];
+        }
+        return buffers.vminX;
+    }
+
+    /**
+     * @return a buffer as long as the height of the bitmap
+     */
+    public int[] getVminY() {
+        Buffers buffers = mBuffers;
+        if (buffers.vminY == null || buffers.vminY.length < buffers.height) {
+            buffers.vminY = new int[buffers.height];
+        }
+        return buffers.vminY;
+    }
+
+    /**
+     * @param radius the radius to apply in the blur task
+     * @return the ring of packed colors used by the stack blur
+     */
+    public int[] getStack(int radius) {
+        return getStacks(radius, 1)[0];
+    }
+
+    /**
+     * @param radius the radius to apply in the blur task
+     * @param count  number of bands blurred at the same time
+     * @return one ring of packed colors for every band
+     */
+    public int[][] getStacks(int radius, int count) {
+        Buffers buffers = mBuffers;
+        int div = radius + radius + 1;
+        if (buffers.stacks == null || buffers.stacks.length < count
+                || buffers.stacks[0].length != div) {
+            buffers.stacks = new int[count][div];
+        }
+        return buffers.stacks;
+    }
+
+    /**
+     * @param length number of taps of the kernel
+     * @return a buffer to hold the weights of a convolution kernel
+     */
+    public int[] getKernel(int length) {
+        Buffers buffers = mBuffers;
+        if (buffers.kernel == null || buffers.kernel.length < length) {
+            buffers.kernel = new int[length];
+        }
+        return buffers.kernel;
+    }
+
+    /**
+     * @param length number of pixels of every level of the pyramid
+     * @return a buffer holding the downsampled levels of the dual filter blur, see {@link
+     * DualKawaseBlur}
+     */
+    public int[] getPyramid(int length) {
+        Buffers buffers = mBuffers;
+        if (buffers.pyramid == null || buffers.pyramid.length < length) {
+            buffers.pyramid = new int[length];
+        }
+        return buffers.pyramid;
+    }
+
+    /**
+     * @return the object attached to the buffers, null if none or if the buffers were dropped
+     */
+    public Object getAttachment() {
+        Buffers buffers = mBuffers;
+        return buffers != null ? buffers.attachment : null;
+    }
+
+    /**
+     * Attaches data derived from the last blur, like a previous result. It is kept and dropped
+     * with the buffers, ignored if they were dropped.
+     *
+     * @param attachment the object to keep
+     */
+    public void setAttachment(Object attachment) {
+        Buffers buffers = mBuffers;
+        if (buffers != null) {
+            buffers.attachment = attachment;
+        }
+    }
+
+    private static class Buffers {
+
+        private int size;
+        private int width;
+        private int height;
+        private int[] pixels;
+        private short[] pixels565;
+        private int[] scratch;
+        private int[] vminX;
+        private int[] vminY;
+        private int[][] stacks;
+        private int[] kernel;
+        private int[] pyramid;
+        private Object attachment;
+    }
+}
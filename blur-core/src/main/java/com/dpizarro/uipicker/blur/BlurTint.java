@@ -0,0 +1,178 @@
+package com.dpizarro.uipicker.blur;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The filter color and the alpha of the blurred background, applied by the engines while they
+ * write the last pass instead of drawing the blurred bitmap again through a color filter.
+ *
+ * The color is blended with the same OVERLAY formula as Android's PorterDuffColorFilter in
+ * OVERLAY mode, with the color as source and the pixel as destination. For opaque pixels the result of
+ * each channel only depends on its value, so it is read from a table; translucent pixels are
+ * computed.
+ */
+public final class BlurTint {
+
+    private final int mFilterColor;
+    private final int mAlpha;
+    private final boolean mFilter;
+
+    /**
+     * Premultiplied filter color
+     */
+    private final int mSa, mSr, mSg, mSb;
+
+    /**
+     * Tinted channels of opaque pixels
+     */
+    private final int[] mRed = new int[256];
+    private final int[] mGreen = new int[256];
+    private final int[] mBlue = new int[256];
+
+    private BlurTint(int filterColor, int alpha) {
+        mFilterColor = filterColor;
+        mAlpha = alpha;
+        mFilter = filterColor != -1;
+        mSa = filterColor >>> 24;
+        mSr = mulDiv255Round((filterColor >> 16) & 0xff, mSa);
+        mSg = mulDiv255Round((filterColor >> 8) & 0xff, mSa);
+        mSb = mulDiv255Round(filterColor & 0xff, mSa);
+        for (int c = 0; c < 256; c++) {
+            mRed[c] = mFilter ? overlay(mSr, c, mSa, 255) : c;
+            mGreen[c] = mFilter ? overlay(mSg, c, mSa, 255) : c;
+            mBlue[c] = mFilter ? overlay(mSb, c, mSa, 255) : c;
+        }
+    }
+
+    /**
+     * @param filterColor the color of the filter, -1 if none
+     * @param alpha       the alpha of the blurred background, from 0 to 255
+     * @return the tint, or null if it wouldn't change any pixel
+     */
+    public static BlurTint create(int filterColor, int alpha) {
+        if (filterColor == -1 && alpha >= 255) {
+            return null;
+        }
+        return new BlurTint(filterColor, Math.max(0, Math.min(255, alpha)));
+    }
+
+    /**
+     * @return 'true' if this tint was created with the same color and alpha
+     */
+    public boolean matches(int filterColor, int alpha) {
+        return mFilterColor == filterColor && mAlpha == Math.max(0, Math.min(255, alpha));
+    }
+
+    /**
+     * Tints one blurred pixel.
+     *
+     * @param a alpha of the pixel
+     * @param r red of the pixel, not premultiplied
+     * @param g green of the pixel, not premultiplied
+     * @param b blue of the pixel, not premultiplied
+     * @return the ARGB color to write
+     */
+    public int apply(int a, int r, int g, int b) {
+        if (a == 0xff) {
+            return (mAlpha << 24) | (mRed[r] << 16) | (mGreen[g] << 8) | mBlue[b];
+        }
+        return applyTranslucent(a, r, g, b);
+    }
+
+    /**
+     * Tints pixels already blurred, for the engines that can't do it while blurring.
+     */
+    public void apply(int[] pixels, int offset, int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int p = pixels[i];
+            pixels[i] = apply(p >>> 24, (p >> 16) & 0xff, (p >> 8) & 0xff, p & 0xff);
+        }
+    }
+
+    /**
+     * Table for RenderScript's ScriptIntrinsicLUT, which works on premultiplied pixels. Exact for
+     * opaque pixels; translucent ones, only found where the layout has no background, get the
+     * color curve of opaque pixels.
+     *
+     * @param channel 0 for alpha, 1 for red, 2 for green, 3 for blue
+     * @param value   premultiplied value of the channel
+     * @return the premultiplied value to write
+     */
+    public int premultipliedTable(int channel, int value) {
+        switch (channel) {
+            case 0:
+                return mulDiv255Round(mFilter ? mSa + value - mulDiv255Round(mSa, value) : value,
+                        mAlpha);
+            case 1:
+                return mulDiv255Round(mRed[value], mAlpha);
+            case 2:
+                return mulDiv255Round(mGreen[value], mAlpha);
+            default:
+                return mulDiv255Round(mBlue[value], mAlpha);
+        }
+    }
+
+    private int applyTranslucent(int a, int r, int g, int b) {
+        int da = a;
+        int dr = mulDiv255Round(r, da);
+        int dg = mulDiv255Round(g, da);
+        int db = mulDiv255Round(b, da);
+        if (mFilter) {
+            dr = overlay(mSr, dr, mSa, da);
+            dg = overlay(mSg, dg, mSa, da);
+            db = overlay(mSb, db, mSa, da);
+            da = mSa + da - mulDiv255Round(mSa, da);
+        }
+        if (da == 0) {
+            return 0;
+        }
+        // Back to not premultiplied, as Bitmap#setPixels expects
+        r = Math.min(255, (dr * 255 + (da >> 1)) / da);
+        g = Math.min(255, (dg * 255 + (da >> 1)) / da);
+        b = Math.min(255, (db * 255 + (da >> 1)) / da);
+        return (mulDiv255Round(da, mAlpha) << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * OVERLAY of a premultiplied source channel over a premultiplied destination channel.
+     */
+    private static int overlay(int sc, int dc, int sa, int da) {
+        int tmp = sc * (255 - da) + dc * (255 - sa);
+        int rc;
+        if (2 * dc <= da) {
+            rc = 2 * sc * dc;
+        } else {
+            rc = sa * da - 2 * (da - dc) * (sa - sc);
+        }
+        return clampDiv255Round(rc + tmp);
+    }
+
+    private static int clampDiv255Round(int prod) {
+        if (prod <= 0) {
+            return 0;
+        } else if (prod >= 255 * 255) {
+            return 255;
+        }
+        prod += 128;
+        return (prod + (prod >> 8)) >> 8;
+    }
+
+    private static int mulDiv255Round(int a, int b) {
+        int prod = a * b + 128;
+        return (prod + (prod >> 8)) >> 8;
+    }
+}
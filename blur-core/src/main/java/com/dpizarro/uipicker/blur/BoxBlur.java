@@ -0,0 +1,155 @@
+package com.dpizarro.uipicker.blur;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Three pass box blur kernel over ARGB pixels.
+ */
+public final class BoxBlur {
+
+    private BoxBlur() {
+    }
+
+    /**
+     * Three pass box blur. Each pass is a horizontal and a vertical sliding window, so the cost
+     * per pixel doesn't depend on the radius. The sizes of the three boxes are chosen to
+     * approximate a gaussian with the same sigma used by RenderScript for the radius.
+     *
+     * Blurs the pixels in place, using the scratch buffer of the {@link BlurBuffers} between the
+     * horizontal and vertical passes.
+     */
+    public static void blur(int[] pix, int w, int h, int radius, BlurBuffers buffers) {
+        int[] tmp = buffers.getScratch();
+        int lastPass = -1;
+        for (int pass = 0; pass < 3; pass++) {
+            if (boxRadius(radius, pass) > 0) {
+                lastPass = pass;
+            }
+        }
+        if (lastPass == -1) {
+            return;
+        }
+        BlurTint tint = buffers.takeTint();
+
+        for (int pass = 0; pass <= lastPass; pass++) {
+            int boxRadius = boxRadius(radius, pass);
+            if (boxRadius > 0) {
+                buffers.checkCancelled();
+                boxBlurHorizontal(pix, tmp, w, h, boxRadius);
+                buffers.checkCancelled();
+                boxBlurVertical(tmp, pix, w, h, boxRadius, pass == lastPass ? tint : null);
+            }
+        }
+    }
+
+    /**
+     * @return the radius of the box of one of the three passes of {@link BoxBlur#blur}
+     */
+    public static int boxRadius(int radius, int pass) {
+        float sigma = GaussianBlur.sigma(radius);
+
+        // Ideal averaging filter width for three passes
+        int wl = (int) Math.floor(Math.sqrt(12 * sigma * sigma / 3 + 1));
+        if (wl % 2 == 0) {
+            wl--;
+        }
+        int wu = wl + 2;
+        int m = Math.round((12 * sigma * sigma - 3 * wl * wl - 12 * wl - 9) / (-4f * wl - 4));
+        return ((pass < m ? wl : wu) - 1) / 2;
+    }
+
+    private static void boxBlurHorizontal(int[] src, int[] dst, int w, int h, int radius) {
+        int wm = w - 1;
+        int div = radius + radius + 1;
+        int mul = (1 << 16) / div;
+        int rsum, gsum, bsum, p;
+
+        for (int y = 0, yw = 0; y < h; y++, yw += w) {
+            rsum = gsum = bsum = 0;
+            for (int i = -radius; i <= radius; i++) {
+                p = src[yw + Math.min(wm, Math.max(i, 0))];
+                rsum += (p >> 16) & 0xff;
+                gsum += (p >> 8) & 0xff;
+                bsum += p & 0xff;
+            }
+            for (int x = 0; x < w; x++) {
+                dst[yw + x] = (src[yw + x] & 0xff000000)
+                        | (((rsum * mul + 0x8000) >> 16) << 16)
+                        | (((gsum * mul + 0x8000) >> 16) << 8)
+                        | ((bsum * mul + 0x8000) >> 16);
+
+                p = src[yw + Math.min(wm, x + radius + 1)];
+                rsum += (p >> 16) & 0xff;
+                gsum += (p >> 8) & 0xff;
+                bsum += p & 0xff;
+
+                p = src[yw + Math.max(0, x - radius)];
+                rsum -= (p >> 16) & 0xff;
+                gsum -= (p >> 8) & 0xff;
+                bsum -= p & 0xff;
+            }
+        }
+    }
+
+    private static void boxBlurVertical(int[] src, int[] dst, int w, int h, int radius,
+            BlurTint tint) {
+        int hm = h - 1;
+        int div = radius + radius + 1;
+        int mul = (1 << 16) / div;
+        int rsum, gsum, bsum, p;
+
+        for (int x = 0; x < w; x++) {
+            rsum = gsum = bsum = 0;
+            for (int i = -radius; i <= radius; i++) {
+                p = src[Math.min(hm, Math.max(i, 0)) * w + x];
+                rsum += (p >> 16) & 0xff;
+                gsum += (p >> 8) & 0xff;
+                bsum += p & 0xff;
+            }
+            for (int y = 0, yi = x; y < h; y++, yi += w) {
+                if (tint == null) {
+                    dst[yi] = (src[yi] & 0xff000000)
+                            | (((rsum * mul + 0x8000) >> 16) << 16)
+                            | (((gsum * mul + 0x8000) >> 16) << 8)
+                            | ((bsum * mul + 0x8000) >> 16);
+                } else {
+                    dst[yi] = tint.apply(src[yi] >>> 24, (rsum * mul + 0x8000) >> 16,
+                            (gsum * mul + 0x8000) >> 16, (bsum * mul + 0x8000) >> 16);
+                }
+
+                p = src[Math.min(hm, y + radius + 1) * w + x];
+                rsum += (p >> 16) & 0xff;
+                gsum += (p >> 8) & 0xff;
+                bsum += p & 0xff;
+
+                p = src[Math.max(0, y - radius) * w + x];
+                rsum -= (p >> 16) & 0xff;
+                gsum -= (p >> 8) & 0xff;
+                bsum -= p & 0xff;
+            }
+        }
+    }
+
+    /**
+     * Distance in pixels from which a pixel still changes the result of the box blur.
+     *
+     * @param radius the radius of the blur
+     * @return the distance
+     */
+    public static int support(int radius) {
+        return boxRadius(radius, 0) + boxRadius(radius, 1) + boxRadius(radius, 2);
+    }
+}
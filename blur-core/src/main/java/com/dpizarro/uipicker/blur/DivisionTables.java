@@ -0,0 +1,128 @@
+package com.dpizarro.uipicker.blur;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Division tables of the stack blur, shared by every picker and built once per radius.
+ *
+ * A table only depends on the radius, but it holds 256 * ((radius + 1) ^ 2) values (about 690
+ * KB at radius 25), so rebuilding it on every blur was most of the garbage of a render. Tables
+ * are built the first time a radius is blurred and at most {@link #MAX_CACHED_TABLES} are kept;
+ * the least recently used one is evicted first.
+ */
+public final class DivisionTables {
+
+    /**
+     * Number of tables kept at the same time. Pickers usually stay on one radius, a few more
+     * cover a radius being changed at runtime without rebuilding on every step.
+     */
+    public static final int MAX_CACHED_TABLES = 3;
+
+    /**
+     * Radius range of the cached tables, other radius values get a new table every time.
+     */
+    public static final int MIN_RADIUS = 1;
+    public static final int MAX_RADIUS = 25;
+
+    private static final Object LOCK = new Object();
+
+    /**
+     * Tables indexed by radius, for radius between {@link #MIN_RADIUS} and {@link #MAX_RADIUS}.
+     */
+    private static final int[][] sTables = new int[MAX_RADIUS + 1][];
+    private static final long[] sLastUse = new long[MAX_RADIUS + 1];
+    private static long sClock;
+    private static int sCount;
+
+    private DivisionTables() {
+    }
+
+    /**
+     * @param radius the radius to apply in the blur task
+     * @return the division table for the radius. It must not be modified
+     */
+    public static int[] get(int radius) {
+        if (radius < MIN_RADIUS || radius > MAX_RADIUS) {
+            return build(radius);
+        }
+        synchronized (LOCK) {
+            int[] table = sTables[radius];
+            if (table == null) {
+                if (sCount >= MAX_CACHED_TABLES) {
+                    evict(leastRecentlyUsed());
+                }
+                table = build(radius);
+                sTables[radius] = table;
+                sCount++;
+            }
+            sLastUse[radius] = ++sClock;
+            return table;
+        }
+    }
+
+    /**
+     * Drops the table of a radius. Blurs already holding it keep working.
+     *
+     * @param radius the radius of the table to drop
+     */
+    public static void evict(int radius) {
+        if (radius < MIN_RADIUS || radius > MAX_RADIUS) {
+            return;
+        }
+        synchronized (LOCK) {
+            if (sTables[radius] != null) {
+                sTables[radius] = null;
+                sLastUse[radius] = 0;
+                sCount--;
+            }
+        }
+    }
+
+    /**
+     * Drops every table, used when the system asks us to trim memory.
+     */
+    public static void clear() {
+        synchronized (LOCK) {
+            for (int radius = 0; radius < sTables.length; radius++) {
+                sTables[radius] = null;
+                sLastUse[radius] = 0;
+            }
+            sCount = 0;
+        }
+    }
+
+    private static int leastRecentlyUsed() {
+        int oldest = -1;
+        for (int radius = MIN_RADIUS; radius < sTables.length; radius++) {
+            if (sTables[radius] != null && (oldest == -1 || sLastUse[radius] < sLastUse[oldest])) {
+                oldest = radius;
+            }
+        }
+        return oldest;
+    }
+
+    private static int[] build(int radius) {
+        int div = radius + radius + 1;
+        int divsum = (div + 1) >> 1;
+        divsum *= divsum;
+        int[] dv = new int[256 * divsum];
+        for (int i = 0; i < 256 * divsum; i++) {
+            dv[i] = (i / divsum);
+        }
+        return dv;
+    }
+}
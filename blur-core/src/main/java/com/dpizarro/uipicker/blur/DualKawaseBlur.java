@@ -0,0 +1,331 @@
+package com.dpizarro.uipicker.blur;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Dual filter (dual Kawase) pyramid blur kernel over ARGB pixels.
+ */
+public final class DualKawaseBlur {
+
+    /**
+     * Maximum number of times the pixels are halved
+     */
+    public static final int MAX_LEVELS = 7;
+
+    /**
+     * A level is only added while both of its sides keep at least this many pixels
+     */
+    private static final int MIN_LEVEL_SIZE = 4;
+
+    /**
+     * Variance, in squared pixels of the image, of going down and back up the pyramid with as
+     * many levels as the index. Measured over a step edge on a 2048 pixels wide image, it grows
+     * about four times with every level.
+     */
+    private static final float[] LEVEL_VARIANCE = {
+            0f, 2.89f, 14.2f, 59.1f, 238f, 956f, 3828f, 15313f
+    };
+
+    /**
+     * Weights along one axis of the taps of the upsampling filter one pixel away, before and
+     * after, for an even and an odd position. See {@link DualKawaseBlur#upsample}.
+     */
+    private static final int[][] AWAY = {{1, 3, 1, 3}, {3, 1, 3, 1}};
+
+    /**
+     * Weights along one axis of the taps on the center
+     */
+    private static final int[][] CENTER = {{0, 1, 3, 0}, {0, 3, 1, 0}};
+
+    /**
+     * Weights along one axis of the taps half a pixel away, before and after
+     */
+    private static final int[][] HALF = {{0, 3, 4, 1}, {1, 4, 3, 0}};
+
+    private DualKawaseBlur() {
+    }
+
+    /**
+     * Dual filter blur, as presented by Marius Bjorge in "Bandwidth-Efficient Rendering"
+     * (SIGGRAPH 2015). The pixels are halved level by level with a five tap filter and brought
+     * back up with an eight tap filter; the taps fall between pixels, so on the CPU each filter is
+     * a fixed 4x4 kernel. Every level doubles the extent of the blur but costs a quarter of the
+     * previous one, so a blur several times larger than the radius range of the stack blur costs
+     * about the same as a small one: most of the work is the last upsampling pass.
+     *
+     * The radius is the one of the stack blur with the same spread. The pyramid only reaches a
+     * spread every power of two, the rest is added with a small stack blur of its deepest level.
+     * The tint is written with the last pass.
+     *
+     * Blurs the pixels in place, the levels are kept in the pyramid buffer of the {@link
+     * BlurBuffers}.
+     */
+    public static void blur(int[] pix, int w, int h, int radius, BlurBuffers buffers) {
+        float variance = radius * (radius + 2) / 6f;
+        int levels = levels(w, h, variance);
+        if (levels == 0) {
+            StackBlur.blur(pix, w, h, Math.min(radius, DivisionTables.MAX_RADIUS), buffers);
+            return;
+        }
+
+        int[] pyramid = buffers.getPyramid(offset(w, h, 0, levels));
+        BlurTint tint = buffers.takeTint();
+
+        int[] src = pix;
+        int srcOffset = 0;
+        int sw = w;
+        int sh = h;
+        for (int level = 1; level <= levels; level++) {
+            int dstOffset = offset(w, h, level, levels);
+            int dw = (sw + 1) / 2;
+            int dh = (sh + 1) / 2;
+            downsample(src, srcOffset, sw, sh, pyramid, dstOffset, dw, dh, buffers);
+            src = pyramid;
+            srcOffset = dstOffset;
+            sw = dw;
+            sh = dh;
+        }
+
+        // The deepest level is at the start of the buffer, where the stack blur can reach it
+        int fillRadius = fillRadius(variance, levels);
+        if (fillRadius > 0) {
+            buffers.checkCancelled();
+            int[] dv = DivisionTables.get(fillRadius);
+            int[] stack = buffers.getStack(fillRadius);
+            int[] vminX = buffers.getVminX();
+            int[] vminY = buffers.getVminY();
+            StackBlur.fillVmin(vminX, vminY, sw, sh, fillRadius);
+            StackBlur.blurRows(pyramid, sw, fillRadius, dv, stack, vminX, 0, sh);
+            StackBlur.blurColumns(pyramid, sw, sh, fillRadius, dv, stack, vminY, null, 0, sw);
+        }
+
+        for (int level = levels; level >= 1; level--) {
+            int dw = levelSize(w, level - 1);
+            int dh = levelSize(h, level - 1);
+            if (level == 1) {
+                upsample(pyramid, srcOffset, sw, sh, pix, 0, dw, dh, true, tint, buffers);
+            } else {
+                int dstOffset = offset(w, h, level - 1, levels);
+                upsample(pyramid, srcOffset, sw, sh, pyramid, dstOffset, dw, dh, false, null,
+                        buffers);
+                srcOffset = dstOffset;
+            }
+            sw = dw;
+            sh = dh;
+        }
+    }
+
+    /**
+     * @return the number of levels of the pyramid for the variance of the radius
+     */
+    static int levels(int w, int h, float variance) {
+        int levels = 0;
+        while (levels < MAX_LEVELS && LEVEL_VARIANCE[levels + 1] <= variance
+                && Math.min(levelSize(w, levels + 1), levelSize(h, levels + 1))
+                >= MIN_LEVEL_SIZE) {
+            levels++;
+        }
+        return levels;
+    }
+
+    /**
+     * @return the radius of the stack blur of the deepest level adding the variance the pyramid
+     * doesn't reach, 0 if none
+     */
+    static int fillRadius(float variance, int levels) {
+        // Pixels of the deepest level are 4^levels times bigger in area
+        float rest = (variance - LEVEL_VARIANCE[levels]) / (1 << (levels + levels));
+        int radius = Math.round((float) Math.sqrt(1 + 6 * rest) - 1);
+        return Math.max(0, Math.min(radius, DivisionTables.MAX_RADIUS));
+    }
+
+    /**
+     * @return the width or the height of a level
+     */
+    private static int levelSize(int size, int level) {
+        for (int i = 0; i < level; i++) {
+            size = (size + 1) / 2;
+        }
+        return size;
+    }
+
+    /**
+     * The levels are stored from the deepest one, so the offset of a level is the size of the
+     * levels below it. The offset of level 0 is the length of the pyramid.
+     */
+    private static int offset(int w, int h, int level, int levels) {
+        int offset = 0;
+        for (int i = level + 1; i <= levels; i++) {
+            offset += levelSize(w, i) * levelSize(h, i);
+        }
+        return offset;
+    }
+
+    /**
+     * Halves the pixels. The four taps of the filter at the corners of the 2x2 block read
+     * between four pixels, plus the block itself four times: twelve pixels around the block
+     * weighted 1 and the four of the block weighted 5, out of 32.
+     */
+    private static void downsample(int[] src, int srcOffset, int sw, int sh, int[] dst,
+            int dstOffset, int dw, int dh, BlurBuffers buffers) {
+        int swm = sw - 1;
+        int shm = sh - 1;
+        int p, rb, g, rbIn, gIn;
+
+        for (int y = 0, di = dstOffset; y < dh; y++) {
+            if (y % BlurBuffers.CANCEL_CHECK_LINES == 0) {
+                buffers.checkCancelled();
+            }
+            int sy = y << 1;
+            int r0 = srcOffset + Math.max(sy - 1, 0) * sw;
+            int r1 = srcOffset + Math.min(sy, shm) * sw;
+            int r2 = srcOffset + Math.min(sy + 1, shm) * sw;
+            int r3 = srcOffset + Math.min(sy + 2, shm) * sw;
+
+            for (int x = 0; x < dw; x++, di++) {
+                int sx = x << 1;
+                int c0 = Math.max(sx - 1, 0);
+                int c1 = Math.min(sx, swm);
+                int c2 = Math.min(sx + 1, swm);
+                int c3 = Math.min(sx + 2, swm);
+
+                // Red and blue are added in the same int, 32 * 255 fits in 16 bits
+                rb = g = 0;
+                p = src[r0 + c0]; rb += p & 0xff00ff; g += p & 0xff00;
+                p = src[r0 + c1]; rb += p & 0xff00ff; g += p & 0xff00;
+                p = src[r0 + c2]; rb += p & 0xff00ff; g += p & 0xff00;
+                p = src[r0 + c3]; rb += p & 0xff00ff; g += p & 0xff00;
+                p = src[r1 + c0]; rb += p & 0xff00ff; g += p & 0xff00;
+                p = src[r1 + c3]; rb += p & 0xff00ff; g += p & 0xff00;
+                p = src[r2 + c0]; rb += p & 0xff00ff; g += p & 0xff00;
+                p = src[r2 + c3]; rb += p & 0xff00ff; g += p & 0xff00;
+                p = src[r3 + c0]; rb += p & 0xff00ff; g += p & 0xff00;
+                p = src[r3 + c1]; rb += p & 0xff00ff; g += p & 0xff00;
+                p = src[r3 + c2]; rb += p & 0xff00ff; g += p & 0xff00;
+                p = src[r3 + c3]; rb += p & 0xff00ff; g += p & 0xff00;
+
+                rbIn = gIn = 0;
+                p = src[r1 + c1]; rbIn += p & 0xff00ff; gIn += p & 0xff00;
+                p = src[r1 + c2]; rbIn += p & 0xff00ff; gIn += p & 0xff00;
+                p = src[r2 + c1]; rbIn += p & 0xff00ff; gIn += p & 0xff00;
+                p = src[r2 + c2]; rbIn += p & 0xff00ff; gIn += p & 0xff00;
+                rb += rbIn * 5;
+                g += gIn * 5;
+
+                dst[di] = (((rb + 0x100010) >>> 5) & 0xff00ff) | (((g + 0x1000) >>> 5) & 0xff00);
+            }
+        }
+    }
+
+    /**
+     * Doubles the pixels. The upsampling filter reads four taps one pixel of the lower level
+     * away, weighted 1, and four taps half a pixel away in diagonal, weighted 2. The center of a
+     * written pixel falls a quarter of a pixel away from the center of a pixel of the lower
+     * level, so every tap is a bilinear read with weights 1/4 and 3/4. Along one axis, from the
+     * pixel two before the nearest one for an even position, see {@link DualKawaseBlur#AWAY},
+     * {@link DualKawaseBlur#CENTER} and {@link DualKawaseBlur#HALF}. The kernel is the
+     * horizontal taps on the vertical center, the vertical taps on the horizontal center and
+     * twice the diagonal taps, 192 in total.
+     *
+     * For every written row, the columns of the lower level are first summed with the three
+     * vertical weights, then each pixel adds up to nine of these sums: about 13 multiplications
+     * per pixel instead of the 16 of the whole 4x4 kernel. The sums are kept in the scratch
+     * buffer of the {@link BlurBuffers}, with two columns of margin at each side repeating the
+     * edges. The last pass keeps the alpha of the pixels it writes and applies the tint.
+     */
+    private static void upsample(int[] src, int srcOffset, int sw, int sh, int[] dst,
+            int dstOffset, int dw, int dh, boolean last, BlurTint tint, BlurBuffers buffers) {
+        int shm = sh - 1;
+        int stride = sw + 4;
+        // Red and blue of the three sums, then green
+        int[] sums = buffers.getScratch();
+        int aRb = 0, cRb = stride, dRb = stride * 2;
+        int aG = stride * 3, cG = stride * 4, dG = stride * 5;
+        int p, rb, g, r, gr, b;
+
+        for (int y = 0, di = dstOffset; y < dh; y++) {
+            if (y % BlurBuffers.CANCEL_CHECK_LINES == 0) {
+                buffers.checkCancelled();
+            }
+            int py = y & 1;
+            int by = (y >> 1) - 2 + py;
+            int r0 = srcOffset + Math.max(by, 0) * sw;
+            int r1 = srcOffset + Math.max(by + 1, 0) * sw;
+            int r2 = srcOffset + Math.min(by + 2, shm) * sw;
+            int r3 = srcOffset + Math.min(by + 3, shm) * sw;
+            int[] away = AWAY[py];
+            int[] center = CENTER[py];
+            int[] half = HALF[py];
+
+            for (int x = 0, si = 2; x < sw; x++, si++) {
+                int p0 = src[r0 + x];
+                int p1 = src[r1 + x];
+                int p2 = src[r2 + x];
+                int p3 = src[r3 + x];
+                sums[aRb + si] = away[0] * (p0 & 0xff00ff) + away[1] * (p1 & 0xff00ff)
+                        + away[2] * (p2 & 0xff00ff) + away[3] * (p3 & 0xff00ff);
+                sums[aG + si] = away[0] * (p0 & 0xff00) + away[1] * (p1 & 0xff00)
+                        + away[2] * (p2 & 0xff00) + away[3] * (p3 & 0xff00);
+                sums[cRb + si] = center[1] * (p1 & 0xff00ff) + center[2] * (p2 & 0xff00ff);
+                sums[cG + si] = center[1] * (p1 & 0xff00) + center[2] * (p2 & 0xff00);
+                sums[dRb + si] = half[0] * (p0 & 0xff00ff) + half[1] * (p1 & 0xff00ff)
+                        + half[2] * (p2 & 0xff00ff) + half[3] * (p3 & 0xff00ff);
+                sums[dG + si] = half[0] * (p0 & 0xff00) + half[1] * (p1 & 0xff00)
+                        + half[2] * (p2 & 0xff00) + half[3] * (p3 & 0xff00);
+            }
+            for (int i = 0; i < 6; i++) {
+                int row = i * stride;
+                sums[row] = sums[row + 1] = sums[row + 2];
+                sums[row + sw + 2] = sums[row + sw + 3] = sums[row + sw + 1];
+            }
+
+            for (int x = 0; x < dw; x++, di++) {
+                // Index of the first of the four columns read, with the margin
+                int c = (x >> 1) + (x & 1);
+                if ((x & 1) == 0) {
+                    rb = sums[cRb + c] + 3 * sums[cRb + c + 1] + sums[cRb + c + 2]
+                            + 3 * sums[cRb + c + 3] + sums[aRb + c + 1] + 3 * sums[aRb + c + 2]
+                            + 6 * sums[dRb + c + 1] + 8 * sums[dRb + c + 2]
+                            + 2 * sums[dRb + c + 3];
+                    g = sums[cG + c] + 3 * sums[cG + c + 1] + sums[cG + c + 2]
+                            + 3 * sums[cG + c + 3] + sums[aG + c + 1] + 3 * sums[aG + c + 2]
+                            + 6 * sums[dG + c + 1] + 8 * sums[dG + c + 2] + 2 * sums[dG + c + 3];
+                } else {
+                    rb = 3 * sums[cRb + c] + sums[cRb + c + 1] + 3 * sums[cRb + c + 2]
+                            + sums[cRb + c + 3] + 3 * sums[aRb + c + 1] + sums[aRb + c + 2]
+                            + 2 * sums[dRb + c] + 8 * sums[dRb + c + 1]
+                            + 6 * sums[dRb + c + 2];
+                    g = 3 * sums[cG + c] + sums[cG + c + 1] + 3 * sums[cG + c + 2]
+                            + sums[cG + c + 3] + 3 * sums[aG + c + 1] + sums[aG + c + 2]
+                            + 2 * sums[dG + c] + 8 * sums[dG + c + 1] + 6 * sums[dG + c + 2];
+                }
+
+                // 192 * 255 still fits in the 16 bits of blue, red may use the sign bit. Division
+                // by 192 with rounding, exact for every sum of 192 * 255 or less
+                r = ((rb >>> 16) * 21846 + (1 << 21)) >>> 22;
+                gr = ((g >>> 8) * 21846 + (1 << 21)) >>> 22;
+                b = ((rb & 0xffff) * 21846 + (1 << 21)) >>> 22;
+                if (!last) {
+                    dst[di] = (r << 16) | (gr << 8) | b;
+                } else if (tint == null) {
+                    dst[di] = (dst[di] & 0xff000000) | (r << 16) | (gr << 8) | b;
+                } else {
+                    dst[di] = tint.apply(dst[di] >>> 24, r, gr, b);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.dpizarro.uipicker.blur;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Separable gaussian blur kernel over ARGB pixels.
+ */
+public final class GaussianBlur {
+
+    private GaussianBlur() {
+    }
+
+    /**
+     * Separable gaussian blur with 16.16 fixed point weights. The kernel spans three sigmas at
+     * each side, so the cost per pixel grows linearly with the radius.
+     *
+     * Blurs the pixels in place, using the scratch buffer of the {@link BlurBuffers} between the
+     * horizontal and vertical passes.
+     */
+    public static void blur(int[] pix, int w, int h, int radius, BlurBuffers buffers) {
+        int[] tmp = buffers.getScratch();
+        float sigma = sigma(radius);
+        int size = gaussianSize(sigma);
+        int[] kernel = buffers.getKernel(size + size + 1);
+
+        // Weights normalized so they add up to exactly 1 << 16
+        float total = 0;
+        for (int i = -size; i <= size; i++) {
+            total += (float) Math.exp(-(i * i) / (2 * sigma * sigma));
+        }
+        int sum = 0;
+        for (int i = -size; i <= size; i++) {
+            kernel[i + size] = Math.round(
+                    (float) Math.exp(-(i * i) / (2 * sigma * sigma)) / total * (1 << 16));
+            sum += kernel[i + size];
+        }
+        kernel[size] += (1 << 16) - sum;
+
+        gaussianBlurPass(pix, tmp, w, h, 1, w, kernel, size, null, buffers);
+        gaussianBlurPass(tmp, pix, h, w, w, 1, kernel, size, buffers.takeTint(), buffers);
+    }
+
+    /**
+     * Convolves every line of the image with the kernel.
+     *
+     * @param length     number of pixels of a line
+     * @param lines      number of lines
+     * @param step       distance between two pixels of the same line
+     * @param lineStride distance between the first pixels of two lines
+     */
+    private static void gaussianBlurPass(int[] src, int[] dst, int length, int lines, int step,
+            int lineStride, int[] kernel, int size, BlurTint tint, BlurBuffers buffers) {
+        int last = length - 1;
+        int rsum, gsum, bsum, p, weight, start;
+
+        for (int line = 0; line < lines; line++) {
+            if (line % BlurBuffers.CANCEL_CHECK_LINES == 0) {
+                buffers.checkCancelled();
+            }
+            start = line * lineStride;
+            for (int i = 0; i < length; i++) {
+                rsum = gsum = bsum = 0x8000;
+                if (i >= size && i + size <= last) {
+                    for (int k = -size, s = start + (i - size) * step; k <= size; k++, s += step) {
+                        p = src[s];
+                        weight = kernel[k + size];
+                        rsum += ((p >> 16) & 0xff) * weight;
+                        gsum += ((p >> 8) & 0xff) * weight;
+                        bsum += (p & 0xff) * weight;
+                    }
+                } else {
+                    for (int k = -size; k <= size; k++) {
+                        p = src[start + Math.min(last, Math.max(0, i + k)) * step];
+                        weight = kernel[k + size];
+                        rsum += ((p >> 16) & 0xff) * weight;
+                        gsum += ((p >> 8) & 0xff) * weight;
+                        bsum += (p & 0xff) * weight;
+                    }
+                }
+                p = start + i * step;
+                if (tint == null) {
+                    dst[p] = (src[p] & 0xff000000)
+                            | ((rsum >> 16) << 16)
+                            | ((gsum >> 16) << 8)
+                            | (bsum >> 16);
+                } else {
+                    dst[p] = tint.apply(src[p] >>> 24, rsum >> 16, gsum >> 16, bsum >> 16);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of taps of the gaussian kernel at each side of the center
+     */
+    private static int gaussianSize(float sigma) {
+        return (int) Math.ceil(sigma * 3);
+    }
+
+    /**
+     * Distance in pixels from which a pixel still changes the result of the gaussian blur.
+     *
+     * @param radius the radius of the blur
+     * @return the distance
+     */
+    public static int support(int radius) {
+        return gaussianSize(sigma(radius));
+    }
+
+    /**
+     * @return the standard deviation RenderScript's ScriptIntrinsicBlur uses for the radius, so
+     * every engine blurs about the same for the same radius.
+     */
+    public static float sigma(int radius) {
+        return 0.4f * radius + 0.6f;
+    }
+}
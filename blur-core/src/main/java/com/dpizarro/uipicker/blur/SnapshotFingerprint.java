@@ -0,0 +1,91 @@
+package com.dpizarro.uipicker.blur;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Cheap fingerprint of a snapshot: FNV-1a over its dimensions and a grid of evenly spaced rows
+ * and columns, at most {@link SnapshotFingerprint#MAX_LINES} of each. It reads about
+ * {@code MAX_LINES * (width + height)} pixels instead of all of them, so a change smaller than
+ * the space between two lines of the grid in both directions is not seen.
+ *
+ * Subclasses read the pixels from wherever the snapshot is. The line buffer is reused between
+ * fingerprints, so one instance must be used by one thread at a time.
+ */
+public abstract class SnapshotFingerprint {
+
+    /**
+     * Maximum number of rows, and of columns, read.
+     */
+    public static final int MAX_LINES = 32;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private int[] mLine;
+
+    /**
+     * Reads a rectangle of the snapshot, one row after the other, like
+     * {@code Bitmap.getPixels(pixels, 0, width, x, y, width, height)}. Only whole rows
+     * ({@code height == 1}) and whole columns ({@code width == 1}) are read.
+     *
+     * @param pixels the array to write the pixels to, from index 0
+     */
+    protected abstract void readPixels(int[] pixels, int x, int y, int width, int height);
+
+    /**
+     * @param width  width of the snapshot
+     * @param height height of the snapshot
+     * @return the fingerprint of the snapshot
+     */
+    public long fingerprint(int width, int height) {
+        if (mLine == null || mLine.length < Math.max(width, height)) {
+            mLine = new int[Math.max(width, height)];
+        }
+        long fingerprint = FNV_OFFSET_BASIS;
+        fingerprint = (fingerprint ^ width) * FNV_PRIME;
+        fingerprint = (fingerprint ^ height) * FNV_PRIME;
+
+        int rows = Math.min(height, MAX_LINES);
+        for (int i = 0; i < rows; i++) {
+            readPixels(mLine, 0, line(i, rows, height), width, 1);
+            for (int x = 0; x < width; x++) {
+                fingerprint = (fingerprint ^ mLine[x]) * FNV_PRIME;
+            }
+        }
+        int columns = Math.min(width, MAX_LINES);
+        for (int i = 0; i < columns; i++) {
+            readPixels(mLine, line(i, columns, width), 0, 1, height);
+            for (int y = 0; y < height; y++) {
+                fingerprint = (fingerprint ^ mLine[y]) * FNV_PRIME;
+            }
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Drops the line buffer, it is allocated again by the next fingerprint.
+     */
+    public void release() {
+        mLine = null;
+    }
+
+    /**
+     * @return the line in the middle of the i-th of {@code lines} equal slices of {@code size}
+     */
+    private static int line(int i, int lines, int size) {
+        return (int) ((2L * i + 1) * size / (2 * lines));
+    }
+}
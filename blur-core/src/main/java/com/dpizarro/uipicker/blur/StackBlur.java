@@ -0,0 +1,510 @@
+package com.dpizarro.uipicker.blur;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Stack blur kernels over ARGB and RGB_565 pixels.
+ */
+public final class StackBlur {
+
+    private StackBlur() {
+    }
+
+    /**
+     * Stack Blur v1.0 from
+     * http://www.quasimondo.com/StackBlurForCanvas/StackBlurDemo.html
+     *
+     * Java Author: Mario Klingemann <mario at quasimondo.com>
+     * http://incubator.quasimondo.com
+     * created Feburary 29, 2004
+     * Android port : Yahel Bouaziz <yahel at kayenko.com>
+     * http://www.kayenko.com
+     * ported april 5th, 2012
+     *
+     * This is a compromise between Gaussian Blur and Box blur
+     * It creates much better looking blurs than Box Blur, but is
+     * 7x faster than my Gaussian Blur implementation.
+     *
+     * I called it Stack Blur because this describes best how this
+     * filter works internally: it creates a kind of moving stack
+     * of colors whilst scanning through the image. Thereby it
+     * just has to add one new block of color to the right side
+     * of the stack and remove the leftmost color. The remaining
+     * colors on the topmost layer of the stack are either added on
+     * or reduced by one, depending on if they are on the right or
+     * on the left side of the stack.
+     *
+     * If you are using this algorithm in your code please add
+     * the following line:
+     *
+     * Stack Blur Algorithm by Mario Klingemann <mario@quasimondo.com>
+     *
+     * Blurs the pixels in place. The horizontal pass writes its result back in the pixels, which
+     * the vertical pass reads: a pixel is only written after the last time it is read, so the
+     * only scratch buffers are the stack and the clamped indices, all from the {@link
+     * BlurBuffers}. The rows and the columns can also be blurred in bands on several threads,
+     * with {@link StackBlur#blurRows} and {@link StackBlur#blurColumns}.
+     *
+     * The loops are written for the JIT: the stack is a flat ring of packed RGB pixels that
+     * wraps with a branch instead of a modulo, and the clamped indices are computed once per
+     * blur, see {@link StackBlur#fillVmin}.
+     */
+    public static void blur(int[] pix, int w, int h, int radius, BlurBuffers buffers) {
+        int[] dv = DivisionTables.get(radius);
+        int[] stack = buffers.getStack(radius);
+        int[] vminX = buffers.getVminX();
+        int[] vminY = buffers.getVminY();
+        BlurTint tint = buffers.takeTint();
+        fillVmin(vminX, vminY, w, h, radius);
+
+        for (int y = 0; y < h; y += BlurBuffers.CANCEL_CHECK_LINES) {
+            buffers.checkCancelled();
+            blurRows(pix, w, radius, dv, stack, vminX, y,
+                    Math.min(h, y + BlurBuffers.CANCEL_CHECK_LINES));
+        }
+        for (int x = 0; x < w; x += BlurBuffers.CANCEL_CHECK_LINES) {
+            buffers.checkCancelled();
+            blurColumns(pix, w, h, radius, dv, stack, vminY, tint, x,
+                    Math.min(w, x + BlurBuffers.CANCEL_CHECK_LINES));
+        }
+    }
+
+    /**
+     * Precomputes the index of the pixel entering the stack at every column and row.
+     */
+    public static void fillVmin(int[] vminX, int[] vminY, int w, int h, int radius) {
+        int wm = w - 1;
+        int hm = h - 1;
+        int r1 = radius + 1;
+        for (int x = 0; x < w; x++) {
+            vminX[x] = Math.min(x + r1, wm);
+        }
+        for (int y = 0; y < h; y++) {
+            vminY[y] = Math.min(y + r1, hm) * w;
+        }
+    }
+
+    /**
+     * Horizontal pass of the stack blur over the rows [yStart, yEnd), in place. Bands of rows are
+     * independent, each one only needs its own stack.
+     */
+    public static void blurRows(int[] pix, int w, int radius, int[] dv, int[] stack, int[] vmin,
+            int yStart, int yEnd) {
+        int wm = w - 1;
+        int div = radius + radius + 1;
+        int r1 = radius + 1;
+        int leftWeight = r1 * (r1 + 1) / 2;
+        int rsum, gsum, bsum, x, y, i, p, s, yi, yw;
+        int stackpointer;
+        int stackstart;
+        int routsum, goutsum, boutsum;
+        int rinsum, ginsum, binsum;
+
+        yw = yStart * w;
+
+        for (y = yStart; y < yEnd; y++) {
+            // The left half of the stack and its center repeat the first pixel
+            p = pix[yw] & 0xffffff;
+            for (i = 0; i <= radius; i++) {
+                stack[i] = p;
+            }
+            routsum = (p >>> 16) * r1;
+            goutsum = ((p >> 8) & 0xff) * r1;
+            boutsum = (p & 0xff) * r1;
+            rsum = (p >>> 16) * leftWeight;
+            gsum = ((p >> 8) & 0xff) * leftWeight;
+            bsum = (p & 0xff) * leftWeight;
+            rinsum = ginsum = binsum = 0;
+            for (i = 1; i <= radius; i++) {
+                p = pix[yw + (i < wm ? i : wm)] & 0xffffff;
+                stack[radius + i] = p;
+                rsum += (p >>> 16) * (r1 - i);
+                gsum += ((p >> 8) & 0xff) * (r1 - i);
+                bsum += (p & 0xff) * (r1 - i);
+                rinsum += p >>> 16;
+                ginsum += (p >> 8) & 0xff;
+                binsum += p & 0xff;
+            }
+            stackpointer = radius;
+
+            for (x = 0, yi = yw; x < w; x++, yi++) {
+
+                // Preserve alpha channel: ( 0xff000000 & pix[yi] )
+                pix[yi] = (0xff000000 & pix[yi]) | (dv[rsum] << 16) | (dv[gsum] << 8) | dv[bsum];
+
+                rsum -= routsum;
+                gsum -= goutsum;
+                bsum -= boutsum;
+
+                stackstart = stackpointer + r1;
+                if (stackstart >= div) {
+                    stackstart -= div;
+                }
+                s = stack[stackstart];
+
+                routsum -= s >>> 16;
+                goutsum -= (s >> 8) & 0xff;
+                boutsum -= s & 0xff;
+
+                p = pix[yw + vmin[x]] & 0xffffff;
+                stack[stackstart] = p;
+
+                rinsum += p >>> 16;
+                ginsum += (p >> 8) & 0xff;
+                binsum += p & 0xff;
+
+                rsum += rinsum;
+                gsum += ginsum;
+                bsum += binsum;
+
+                if (++stackpointer == div) {
+                    stackpointer = 0;
+                }
+                s = stack[stackpointer];
+
+                routsum += s >>> 16;
+                goutsum += (s >> 8) & 0xff;
+                boutsum += s & 0xff;
+
+                rinsum -= s >>> 16;
+                ginsum -= (s >> 8) & 0xff;
+                binsum -= s & 0xff;
+            }
+            yw += w;
+        }
+    }
+
+    /**
+     * Vertical pass of the stack blur over the columns [xStart, xEnd), in place. Writes the tint
+     * if there is one. Bands of columns are independent, each one only needs its own stack.
+     */
+    public static void blurColumns(int[] pix, int w, int h, int radius, int[] dv, int[] stack,
+            int[] vmin, BlurTint tint, int xStart, int xEnd) {
+        int hm = h - 1;
+        int div = radius + radius + 1;
+        int r1 = radius + 1;
+        int leftWeight = r1 * (r1 + 1) / 2;
+        int rsum, gsum, bsum, x, y, i, p, s, yi;
+        int stackpointer;
+        int stackstart;
+        int routsum, goutsum, boutsum;
+        int rinsum, ginsum, binsum;
+
+        for (x = xStart; x < xEnd; x++) {
+            // The top half of the stack and its center repeat the first pixel
+            p = pix[x] & 0xffffff;
+            for (i = 0; i <= radius; i++) {
+                stack[i] = p;
+            }
+            routsum = (p >>> 16) * r1;
+            goutsum = ((p >> 8) & 0xff) * r1;
+            boutsum = (p & 0xff) * r1;
+            rsum = (p >>> 16) * leftWeight;
+            gsum = ((p >> 8) & 0xff) * leftWeight;
+            bsum = (p & 0xff) * leftWeight;
+            rinsum = ginsum = binsum = 0;
+            for (i = 1; i <= radius; i++) {
+                p = pix[(i < hm ? i : hm) * w + x] & 0xffffff;
+                stack[radius + i] = p;
+                rsum += (p >>> 16) * (r1 - i);
+                gsum += ((p >> 8) & 0xff) * (r1 - i);
+                bsum += (p & 0xff) * (r1 - i);
+                rinsum += p >>> 16;
+                ginsum += (p >> 8) & 0xff;
+                binsum += p & 0xff;
+            }
+            stackpointer = radius;
+
+            for (y = 0, yi = x; y < h; y++, yi += w) {
+                if (tint == null) {
+                    pix[yi] = (0xff000000 & pix[yi]) | (dv[rsum] << 16) | (dv[gsum] << 8)
+                            | dv[bsum];
+                } else {
+                    pix[yi] = tint.apply(pix[yi] >>> 24, dv[rsum], dv[gsum], dv[bsum]);
+                }
+
+                rsum -= routsum;
+                gsum -= goutsum;
+                bsum -= boutsum;
+
+                stackstart = stackpointer + r1;
+                if (stackstart >= div) {
+                    stackstart -= div;
+                }
+                s = stack[stackstart];
+
+                routsum -= s >>> 16;
+                goutsum -= (s >> 8) & 0xff;
+                boutsum -= s & 0xff;
+
+                p = pix[x + vmin[y]] & 0xffffff;
+                stack[stackstart] = p;
+
+                rinsum += p >>> 16;
+                ginsum += (p >> 8) & 0xff;
+                binsum += p & 0xff;
+
+                rsum += rinsum;
+                gsum += ginsum;
+                bsum += binsum;
+
+                if (++stackpointer == div) {
+                    stackpointer = 0;
+                }
+                s = stack[stackpointer];
+
+                routsum += s >>> 16;
+                goutsum += (s >> 8) & 0xff;
+                boutsum += s & 0xff;
+
+                rinsum -= s >>> 16;
+                ginsum -= (s >> 8) & 0xff;
+                binsum -= s & 0xff;
+            }
+        }
+    }
+
+    /**
+     * Stack blur of RGB_565 pixels, in place like {@link StackBlur#blur}. The channels are
+     * averaged with their 5 and 6 bits, and the sums start at half the divisor so every pass
+     * rounds to the nearest value instead of darkening the image. The pixels take 2 bytes
+     * instead of 4.
+     *
+     * The horizontal pass is stored in place, so its result is rounded to 5 and 6 bits before
+     * the vertical pass and the two roundings add up: red and blue may be off by up to two 5 bit
+     * steps from the 32 bits blur of the same pixels, about 10/255 at most on noisy images and
+     * much less on smooth ones; green by half as much.
+     *
+     * The tint of the buffers is applied with the vertical pass, on the channels expanded to 8
+     * bits. Its alpha is ignored because RGB_565 is opaque.
+     */
+    public static void blur565(short[] pix, int w, int h, int radius, BlurBuffers buffers) {
+        int[] dv = DivisionTables.get(radius);
+        int[] stack = buffers.getStack(radius);
+        int[] vminX = buffers.getVminX();
+        int[] vminY = buffers.getVminY();
+        BlurTint tint = buffers.takeTint();
+        fillVmin(vminX, vminY, w, h, radius);
+
+        for (int y = 0; y < h; y += BlurBuffers.CANCEL_CHECK_LINES) {
+            buffers.checkCancelled();
+            blurRows565(pix, w, radius, dv, stack, vminX, y,
+                    Math.min(h, y + BlurBuffers.CANCEL_CHECK_LINES));
+        }
+        for (int x = 0; x < w; x += BlurBuffers.CANCEL_CHECK_LINES) {
+            buffers.checkCancelled();
+            blurColumns565(pix, w, h, radius, dv, stack, vminY, tint, x,
+                    Math.min(w, x + BlurBuffers.CANCEL_CHECK_LINES));
+        }
+    }
+
+    /**
+     * Horizontal pass of {@link StackBlur#blur565} over the rows [yStart, yEnd), in place.
+     */
+    public static void blurRows565(short[] pix, int w, int radius, int[] dv, int[] stack,
+            int[] vmin, int yStart, int yEnd) {
+        int wm = w - 1;
+        int div = radius + radius + 1;
+        int r1 = radius + 1;
+        int leftWeight = r1 * (r1 + 1) / 2;
+        int half = r1 * r1 / 2;
+        int rsum, gsum, bsum, x, y, i, p, s, yi, yw;
+        int stackpointer;
+        int stackstart;
+        int routsum, goutsum, boutsum;
+        int rinsum, ginsum, binsum;
+
+        yw = yStart * w;
+
+        for (y = yStart; y < yEnd; y++) {
+            p = (0xffff & pix[yw]);
+            for (i = 0; i <= radius; i++) {
+                stack[i] = p;
+            }
+            routsum = (p >>> 11) * r1;
+            goutsum = ((p >> 5) & 0x3f) * r1;
+            boutsum = (p & 0x1f) * r1;
+            rsum = (p >>> 11) * leftWeight + half;
+            gsum = ((p >> 5) & 0x3f) * leftWeight + half;
+            bsum = (p & 0x1f) * leftWeight + half;
+            rinsum = ginsum = binsum = 0;
+            for (i = 1; i <= radius; i++) {
+                p = (0xffff & pix[yw + (i < wm ? i : wm)]);
+                stack[radius + i] = p;
+                rsum += (p >>> 11) * (r1 - i);
+                gsum += ((p >> 5) & 0x3f) * (r1 - i);
+                bsum += (p & 0x1f) * (r1 - i);
+                rinsum += p >>> 11;
+                ginsum += (p >> 5) & 0x3f;
+                binsum += p & 0x1f;
+            }
+            stackpointer = radius;
+
+            for (x = 0, yi = yw; x < w; x++, yi++) {
+
+                pix[yi] = (short) ((dv[rsum] << 11) | (dv[gsum] << 5) | dv[bsum]);
+
+                rsum -= routsum;
+                gsum -= goutsum;
+                bsum -= boutsum;
+
+                stackstart = stackpointer + r1;
+                if (stackstart >= div) {
+                    stackstart -= div;
+                }
+                s = stack[stackstart];
+
+                routsum -= s >>> 11;
+                goutsum -= (s >> 5) & 0x3f;
+                boutsum -= s & 0x1f;
+
+                p = (0xffff & pix[yw + vmin[x]]);
+                stack[stackstart] = p;
+
+                rinsum += p >>> 11;
+                ginsum += (p >> 5) & 0x3f;
+                binsum += p & 0x1f;
+
+                rsum += rinsum;
+                gsum += ginsum;
+                bsum += binsum;
+
+                if (++stackpointer == div) {
+                    stackpointer = 0;
+                }
+                s = stack[stackpointer];
+
+                routsum += s >>> 11;
+                goutsum += (s >> 5) & 0x3f;
+                boutsum += s & 0x1f;
+
+                rinsum -= s >>> 11;
+                ginsum -= (s >> 5) & 0x3f;
+                binsum -= s & 0x1f;
+            }
+            yw += w;
+        }
+    }
+
+    /**
+     * Vertical pass of {@link StackBlur#blur565} over the columns [xStart, xEnd), in place.
+     */
+    public static void blurColumns565(short[] pix, int w, int h, int radius, int[] dv, int[] stack,
+            int[] vmin, BlurTint tint, int xStart, int xEnd) {
+        int hm = h - 1;
+        int div = radius + radius + 1;
+        int r1 = radius + 1;
+        int leftWeight = r1 * (r1 + 1) / 2;
+        int half = r1 * r1 / 2;
+        int rsum, gsum, bsum, x, y, i, p, s, yi, c;
+        int stackpointer;
+        int stackstart;
+        int routsum, goutsum, boutsum;
+        int rinsum, ginsum, binsum;
+
+        for (x = xStart; x < xEnd; x++) {
+            p = (0xffff & pix[x]);
+            for (i = 0; i <= radius; i++) {
+                stack[i] = p;
+            }
+            routsum = (p >>> 11) * r1;
+            goutsum = ((p >> 5) & 0x3f) * r1;
+            boutsum = (p & 0x1f) * r1;
+            rsum = (p >>> 11) * leftWeight + half;
+            gsum = ((p >> 5) & 0x3f) * leftWeight + half;
+            bsum = (p & 0x1f) * leftWeight + half;
+            rinsum = ginsum = binsum = 0;
+            for (i = 1; i <= radius; i++) {
+                p = (0xffff & pix[(i < hm ? i : hm) * w + x]);
+                stack[radius + i] = p;
+                rsum += (p >>> 11) * (r1 - i);
+                gsum += ((p >> 5) & 0x3f) * (r1 - i);
+                bsum += (p & 0x1f) * (r1 - i);
+                rinsum += p >>> 11;
+                ginsum += (p >> 5) & 0x3f;
+                binsum += p & 0x1f;
+            }
+            stackpointer = radius;
+
+            for (y = 0, yi = x; y < h; y++, yi += w) {
+                if (tint == null) {
+                    pix[yi] = (short) ((dv[rsum] << 11) | (dv[gsum] << 5) | dv[bsum]);
+                } else {
+                    c = dv[gsum];
+                    c = tint.apply(0xff, (dv[rsum] << 3) | (dv[rsum] >> 2), (c << 2) | (c >> 4),
+                            (dv[bsum] << 3) | (dv[bsum] >> 2));
+                    pix[yi] = pack565((c >> 16) & 0xff, (c >> 8) & 0xff, c & 0xff);
+                }
+
+                rsum -= routsum;
+                gsum -= goutsum;
+                bsum -= boutsum;
+
+                stackstart = stackpointer + r1;
+                if (stackstart >= div) {
+                    stackstart -= div;
+                }
+                s = stack[stackstart];
+
+                routsum -= s >>> 11;
+                goutsum -= (s >> 5) & 0x3f;
+                boutsum -= s & 0x1f;
+
+                p = (0xffff & pix[x + vmin[y]]);
+                stack[stackstart] = p;
+
+                rinsum += p >>> 11;
+                ginsum += (p >> 5) & 0x3f;
+                binsum += p & 0x1f;
+
+                rsum += rinsum;
+                gsum += ginsum;
+                bsum += binsum;
+
+                if (++stackpointer == div) {
+                    stackpointer = 0;
+                }
+                s = stack[stackpointer];
+
+                routsum += s >>> 11;
+                goutsum += (s >> 5) & 0x3f;
+                boutsum += s & 0x1f;
+
+                rinsum -= s >>> 11;
+                ginsum -= (s >> 5) & 0x3f;
+                binsum -= s & 0x1f;
+            }
+        }
+    }
+
+    /**
+     * @return the RGB_565 pixel of 8 bits channels, rounded to the nearest value
+     */
+    private static short pack565(int r, int g, int b) {
+        return (short) ((((r * 249 + 1014) >> 11) << 11) | (((g * 253 + 505) >> 10) << 5)
+                | ((b * 249 + 1014) >> 11));
+    }
+
+    /**
+     * Distance in pixels from which a pixel still changes the result of the stack blur.
+     *
+     * @param radius the radius of the blur
+     * @return the distance
+     */
+    public static int support(int radius) {
+        return radius;
+    }
+}
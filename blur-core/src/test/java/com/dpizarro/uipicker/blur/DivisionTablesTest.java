@@ -0,0 +1,95 @@
+package com.dpizarro.uipicker.blur;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class DivisionTablesTest {
+
+    @Before
+    public void setUp() {
+        DivisionTables.clear();
+    }
+
+    @After
+    public void tearDown() {
+        DivisionTables.clear();
+    }
+
+    @Test
+    public void tableDividesBySumOfTheStack() {
+        int radius = 4;
+        int div = (radius + 1) * (radius + 1);
+        int[] table = DivisionTables.get(radius);
+        assertEquals(256 * div, table.length);
+        for (int i = 0; i < table.length; i++) {
+            assertEquals(i / div, table[i]);
+        }
+    }
+
+    @Test
+    public void tableIsCached() {
+        assertSame(DivisionTables.get(10), DivisionTables.get(10));
+    }
+
+    @Test
+    public void leastRecentlyUsedTableIsEvicted() {
+        assertEquals(3, DivisionTables.MAX_CACHED_TABLES);
+        int[] one = DivisionTables.get(1);
+        int[] two = DivisionTables.get(2);
+        int[] three = DivisionTables.get(3);
+        // 1 is used again, so 2 is the oldest one when 4 comes in
+        DivisionTables.get(1);
+        DivisionTables.get(4);
+
+        assertSame(one, DivisionTables.get(1));
+        assertSame(three, DivisionTables.get(3));
+        assertNotSame(two, DivisionTables.get(2));
+    }
+
+    @Test
+    public void radiusOutOfRangeIsNotCached() {
+        int radius = DivisionTables.MAX_RADIUS + 1;
+        int[] table = DivisionTables.get(radius);
+        assertEquals(256 * (radius + 1) * (radius + 1), table.length);
+        assertNotSame(table, DivisionTables.get(radius));
+
+        // The cached tables are not evicted for it
+        int[] one = DivisionTables.get(1);
+        DivisionTables.get(radius);
+        DivisionTables.get(radius);
+        DivisionTables.get(radius);
+        assertSame(one, DivisionTables.get(1));
+    }
+
+    @Test
+    public void evictAndClearDropTables() {
+        int[] five = DivisionTables.get(5);
+        int[] six = DivisionTables.get(6);
+        DivisionTables.evict(5);
+        assertNotSame(five, DivisionTables.get(5));
+        assertSame(six, DivisionTables.get(6));
+
+        DivisionTables.clear();
+        assertNotSame(six, DivisionTables.get(6));
+    }
+}
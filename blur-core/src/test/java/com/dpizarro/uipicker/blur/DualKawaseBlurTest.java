@@ -0,0 +1,79 @@
+package com.dpizarro.uipicker.blur;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class DualKawaseBlurTest {
+
+    private static final int MAX_RADIUS = 250;
+
+    @Test
+    public void onePixelIsUnchanged() {
+        for (int radius : new int[]{1, MAX_RADIUS}) {
+            int[] pixels = {0x80c0ffee};
+            TestImages.blur(TestImages.DUAL_KAWASE, pixels, 1, 1, radius);
+            assertArrayEquals("radius " + radius, new int[]{0x80c0ffee}, pixels);
+        }
+    }
+
+    @Test
+    public void flatImageStaysFlat() {
+        int[][] sizes = {{3, 40}, {40, 3}, {17, 17}, {160, 90}};
+        for (int[] size : sizes) {
+            for (int radius : new int[]{1, 7, MAX_RADIUS}) {
+                int[] pixels = TestImages.flat(size[0], size[1], 0xff3a7bd5);
+                TestImages.blur(TestImages.DUAL_KAWASE, pixels, size[0], size[1], radius);
+                assertArrayEquals(size[0] + "x" + size[1] + " radius " + radius,
+                        TestImages.flat(size[0], size[1], 0xff3a7bd5), pixels);
+            }
+        }
+    }
+
+    @Test
+    public void imageNarrowerThanTheRadiusIsAveraged() {
+        int[][] sizes = {{2, 64}, {64, 2}, {5, 5}, {3, 300}};
+        for (int[] size : sizes) {
+            int[] source = TestImages.random(size[0], size[1], size[0] * 31 + size[1]);
+            int[] pixels = source.clone();
+            TestImages.blur(TestImages.DUAL_KAWASE, pixels, size[0], size[1], MAX_RADIUS);
+            TestImages.assertAveraged(size[0] + "x" + size[1], source, pixels);
+        }
+    }
+
+    @Test
+    public void maximumRadiusBlurs() {
+        int[] source = TestImages.random(120, 200, 42);
+        int[] pixels = source.clone();
+        TestImages.blur(TestImages.DUAL_KAWASE, pixels, 120, 200, MAX_RADIUS);
+        TestImages.assertAveraged("120x200", source, pixels);
+        assertFalse(java.util.Arrays.equals(source, pixels));
+    }
+
+    @Test
+    public void smallRadiusMatchesTheStackBlurWithoutLevels() {
+        // Below the spread of one level the pyramid is not used
+        int[] source = TestImages.random(64, 48, 3);
+        int[] kawase = source.clone();
+        int[] stack = source.clone();
+        TestImages.blur(TestImages.DUAL_KAWASE, kawase, 64, 48, 1);
+        TestImages.blur(TestImages.STACK, stack, 64, 48, 1);
+        assertArrayEquals(stack, kawase);
+    }
+}
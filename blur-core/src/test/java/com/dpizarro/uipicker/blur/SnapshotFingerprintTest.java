@@ -0,0 +1,96 @@
+package com.dpizarro.uipicker.blur;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class SnapshotFingerprintTest {
+
+    @Test
+    public void equalSnapshotsMatch() {
+        int[][] sizes = {{1, 1}, {3, 200}, {288, 512}};
+        for (int[] size : sizes) {
+            ArrayFingerprint first = new ArrayFingerprint(
+                    TestImages.random(size[0], size[1], 7), size[0]);
+            ArrayFingerprint second = new ArrayFingerprint(
+                    TestImages.random(size[0], size[1], 7), size[0]);
+            assertEquals(first.fingerprint(size[0], size[1]),
+                    second.fingerprint(size[0], size[1]));
+            // The line buffer is reused
+            assertEquals(first.fingerprint(size[0], size[1]),
+                    first.fingerprint(size[0], size[1]));
+        }
+    }
+
+    @Test
+    public void differentSnapshotsDiffer() {
+        int[] pixels = TestImages.random(288, 512, 7);
+        long fingerprint = new ArrayFingerprint(pixels, 288).fingerprint(288, 512);
+
+        assertNotEquals(fingerprint, new ArrayFingerprint(TestImages.random(288, 512, 8), 288)
+                .fingerprint(288, 512));
+        // Same pixels, other shape
+        assertNotEquals(fingerprint, new ArrayFingerprint(pixels, 576).fingerprint(576, 256));
+
+        // A square a tenth of the snapshot wide changes anywhere
+        for (int top = 0; top + 29 <= 512; top += 37) {
+            for (int left = 0; left + 29 <= 288; left += 23) {
+                int[] changed = pixels.clone();
+                for (int y = top; y < top + 29; y++) {
+                    for (int x = left; x < left + 29; x++) {
+                        changed[y * 288 + x] ^= 0x00ffffff;
+                    }
+                }
+                assertNotEquals("square at " + left + "," + top, fingerprint,
+                        new ArrayFingerprint(changed, 288).fingerprint(288, 512));
+            }
+        }
+    }
+
+    @Test
+    public void readsAGridOnly() {
+        ArrayFingerprint fingerprint = new ArrayFingerprint(TestImages.random(288, 512, 7), 288);
+        fingerprint.fingerprint(288, 512);
+        assertEquals(SnapshotFingerprint.MAX_LINES * (288 + 512), fingerprint.mRead);
+        assertTrue(fingerprint.mRead < 288 * 512 / 5);
+    }
+
+    private static class ArrayFingerprint extends SnapshotFingerprint {
+
+        private final int[] mPixels;
+        private final int mWidth;
+        private int mRead;
+
+        private ArrayFingerprint(int[] pixels, int width) {
+            mPixels = pixels;
+            mWidth = width;
+        }
+
+        @Override
+        protected void readPixels(int[] pixels, int x, int y, int width, int height) {
+            for (int row = 0; row < height; row++) {
+                for (int column = 0; column < width; column++) {
+                    pixels[row * width + column] = mPixels[(y + row) * mWidth + x + column];
+                }
+            }
+            mRead += width * height;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.dpizarro.uipicker.blur;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+public class StackBlur565Test {
+
+    /**
+     * Two 5 bit steps, see {@link StackBlur#blur565}
+     */
+    private static final int MAX_ERROR = 2 * 255 / 31 + 1;
+
+    @Test
+    public void onePixelIsUnchanged() {
+        short[] pixels = {(short) 0xb5a3};
+        blur565(pixels, 1, 1, DivisionTables.MAX_RADIUS);
+        assertArrayEquals(new short[]{(short) 0xb5a3}, pixels);
+    }
+
+    @Test
+    public void flatImageStaysFlat() {
+        short[] pixels = new short[40 * 3];
+        short[] expected = new short[40 * 3];
+        java.util.Arrays.fill(pixels, (short) 0x3a7b);
+        java.util.Arrays.fill(expected, (short) 0x3a7b);
+        blur565(pixels, 40, 3, DivisionTables.MAX_RADIUS);
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    public void closeToTheArgbBlur() {
+        int[][] sizes = {{3, 40}, {40, 3}, {31, 17}, {128, 96}};
+        for (int[] size : sizes) {
+            int w = size[0];
+            int h = size[1];
+            short[] pixels565 = new short[w * h];
+            int[] pixels = new int[w * h];
+            int[] source = TestImages.random(w, h, w * 7 + h);
+            for (int i = 0; i < source.length; i++) {
+                pixels565[i] = to565(source[i]);
+                pixels[i] = toArgb(pixels565[i]);
+            }
+
+            for (int radius : new int[]{1, 4, 12, DivisionTables.MAX_RADIUS}) {
+                short[] blurred565 = pixels565.clone();
+                int[] blurred = pixels.clone();
+                blur565(blurred565, w, h, radius);
+                TestImages.blur(TestImages.STACK, blurred, w, h, radius);
+                for (int i = 0; i < blurred.length; i++) {
+                    int actual = toArgb(blurred565[i]);
+                    for (int shift = 0; shift < 24; shift += 8) {
+                        int error = Math.abs(((actual >> shift) & 0xff)
+                                - ((blurred[i] >> shift) & 0xff));
+                        assertTrue(w + "x" + h + " radius " + radius + " pixel " + i
+                                + " off by " + error, error <= MAX_ERROR);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void blur565(short[] pixels, int w, int h, int radius) {
+        BlurBuffers buffers = new BlurBuffers();
+        buffers.ensure(w, h);
+        try {
+            StackBlur.blur565(pixels, w, h, radius, buffers);
+        } finally {
+            buffers.finish();
+        }
+    }
+
+    private static short to565(int color) {
+        return (short) (((color >> 8) & 0xf800) | ((color >> 5) & 0x07e0)
+                | ((color >> 3) & 0x001f));
+    }
+
+    private static int toArgb(short color) {
+        int r = (color >> 11) & 0x1f;
+        int g = (color >> 5) & 0x3f;
+        int b = color & 0x1f;
+        return 0xff000000 | ((r << 3 | r >> 2) << 16) | ((g << 2 | g >> 4) << 8)
+                | (b << 3 | b >> 2);
+    }
+}
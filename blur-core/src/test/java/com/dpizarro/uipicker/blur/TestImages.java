@@ -0,0 +1,101 @@
+package com.dpizarro.uipicker.blur;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Images and checks shared by the tests of the kernels.
+ */
+final class TestImages {
+
+    static final int STACK = 0;
+    static final int BOX = 1;
+    static final int GAUSSIAN = 2;
+    static final int DUAL_KAWASE = 3;
+
+    private TestImages() {
+    }
+
+    /**
+     * @return ARGB pixels with every channel random, alpha included
+     */
+    static int[] random(int w, int h, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[w * h];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    static int[] flat(int w, int h, int color) {
+        int[] pixels = new int[w * h];
+        java.util.Arrays.fill(pixels, color);
+        return pixels;
+    }
+
+    /**
+     * Blurs with one of the kernels, with buffers of its own.
+     */
+    static void blur(int kernel, int[] pixels, int w, int h, int radius) {
+        BlurBuffers buffers = new BlurBuffers();
+        buffers.ensure(w, h);
+        try {
+            switch (kernel) {
+                case STACK:
+                    StackBlur.blur(pixels, w, h, radius, buffers);
+                    break;
+                case BOX:
+                    BoxBlur.blur(pixels, w, h, radius, buffers);
+                    break;
+                case GAUSSIAN:
+                    GaussianBlur.blur(pixels, w, h, radius, buffers);
+                    break;
+                default:
+                    DualKawaseBlur.blur(pixels, w, h, radius, buffers);
+                    break;
+            }
+        } finally {
+            buffers.finish();
+        }
+    }
+
+    /**
+     * Checks that a blur only averages: every channel stays between its minimum and maximum in
+     * the source, and the alpha of every pixel is kept.
+     */
+    static void assertAveraged(String message, int[] source, int[] blurred) {
+        for (int shift = 0; shift < 24; shift += 8) {
+            int min = 255;
+            int max = 0;
+            for (int pixel : source) {
+                min = Math.min(min, (pixel >> shift) & 0xff);
+                max = Math.max(max, (pixel >> shift) & 0xff);
+            }
+            for (int pixel : blurred) {
+                int value = (pixel >> shift) & 0xff;
+                assertTrue(message + ": channel out of range", value >= min && value <= max);
+            }
+        }
+        for (int i = 0; i < source.length; i++) {
+            assertEquals(message + ": alpha changed", source[i] >>> 24, blurred[i] >>> 24);
+        }
+    }
+}
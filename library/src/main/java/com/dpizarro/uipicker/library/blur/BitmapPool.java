@@ -0,0 +1,150 @@
+package com.dpizarro.uipicker.library.blur;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Pool of mutable bitmaps grouped by size and config, so the snapshot and the blurred background
+ * of every open reuse the pixel memory of the previous one. The pool never holds more than its
+ * maximum size in bytes, the least recently returned bitmaps are recycled first.
+ */
+public class BitmapPool {
+
+    private final Map<Long, List<Bitmap>> mBuckets = new HashMap<Long, List<Bitmap>>();
+
+    /**
+     * Every pooled bitmap, the least recently returned first.
+     */
+    private final LinkedList<Bitmap> mOrder = new LinkedList<Bitmap>();
+
+    private int mMaxSize;
+    private int mSize;
+
+    /**
+     * @param maxSize maximum number of bytes of pixel memory held by the pool
+     */
+    public BitmapPool(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    private static long key(int width, int height, Bitmap.Config config) {
+        return ((long) width << 32) | ((long) height << 8) | config.ordinal();
+    }
+
+    private static int sizeOf(Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight();
+    }
+
+    /**
+     * Returns a pooled bitmap of the given size and config, cleared to transparent, or a new one if
+     * there is none.
+     *
+     * @param width  width of the bitmap
+     * @param height height of the bitmap
+     * @param config config of the bitmap
+     * @return a mutable bitmap
+     */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = null;
+        synchronized (this) {
+            List<Bitmap> bucket = mBuckets.get(key(width, height, config));
+            if (bucket != null && !bucket.isEmpty()) {
+                bitmap = bucket.remove(bucket.size() - 1);
+                mOrder.remove(bitmap);
+                mSize -= sizeOf(bitmap);
+            }
+        }
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+        bitmap.eraseColor(0);
+        return bitmap;
+    }
+
+    /**
+     * Returns a bitmap to the pool. Immutable or recycled bitmaps are ignored, and bitmaps are
+     * recycled when they don't fit.
+     *
+     * @param bitmap the bitmap nobody is using anymore
+     */
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) {
+            return;
+        }
+        int size = sizeOf(bitmap);
+        if (size > mMaxSize) {
+            bitmap.recycle();
+            return;
+        }
+        synchronized (this) {
+            if (mOrder.contains(bitmap)) {
+                return;
+            }
+            long key = key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+            List<Bitmap> bucket = mBuckets.get(key);
+            if (bucket == null) {
+                bucket = new ArrayList<Bitmap>(2);
+                mBuckets.put(key, bucket);
+            }
+            bucket.add(bitmap);
+            mOrder.addLast(bitmap);
+            mSize += size;
+            trimToSize(mMaxSize);
+        }
+    }
+
+    /**
+     * Sets the maximum number of bytes of pixel memory held by the pool, recycling bitmaps if
+     * necessary.
+     *
+     * @param maxSize maximum size in bytes, 0 disables the pool
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        mMaxSize = maxSize;
+        trimToSize(maxSize);
+    }
+
+    /**
+     * @return the pixel memory held by the pool, in bytes
+     */
+    public synchronized int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Recycles every pooled bitmap.
+     */
+    public synchronized void clear() {
+        trimToSize(0);
+    }
+
+    private void trimToSize(int maxSize) {
+        while (mSize > maxSize && !mOrder.isEmpty()) {
+            Bitmap bitmap = mOrder.removeFirst();
+            mBuckets.get(key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()))
+                    .remove(bitmap);
+            mSize -= sizeOf(bitmap);
+            bitmap.recycle();
+        }
+    }
+}
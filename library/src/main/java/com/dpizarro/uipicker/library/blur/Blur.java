@@ -1,19 +1,20 @@
 package com.dpizarro.uipicker.library.blur;
 
-import android.annotation.SuppressLint;
+import com.dpizarro.uipicker.blur.BlurTint;
+import com.dpizarro.uipicker.blur.BoxBlur;
+import com.dpizarro.uipicker.blur.GaussianBlur;
+import com.dpizarro.uipicker.blur.StackBlur;
+import com.dpizarro.uipicker.library.metrics.PickerUITrace;
+
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.os.Build;
-import android.renderscript.Allocation;
-import android.renderscript.Element;
-import android.renderscript.RenderScript;
-import android.renderscript.ScriptIntrinsicBlur;
-import android.util.Log;
+
+import java.nio.ShortBuffer;
 
 class Blur {
 
     /**
-     * Process the image using renderscript if possible with default radius.
+     * Process the image with the default engine and radius.
      *
      * @param context    renderscript requires an android context
      * @param sentBitmap the bitmap to blur
@@ -21,299 +22,130 @@ class Blur {
      */
     public static Bitmap apply(Context context, Bitmap sentBitmap) {
         return apply(context, sentBitmap, PickerUIBlur.DEFAULT_BLUR_RADIUS,
-                PickerUIBlur.DEFAULT_USE_BLUR_RENDERSCRIPT);
+                PickerUIBlur.getBlurEngine(PickerUIBlur.DEFAULT_BLUR_ENGINE), new BlurWorkspace());
     }
 
     /**
-     * Process the image using renderscript if possible
+     * Process the image with the selected engine. The bitmap is blurred in place.
      *
-     * @param context         renderscript requires an android context
-     * @param sentBitmap      the bitmap to blur
-     * @param radius          the radius to apply in the blur task
-     * @param useRenderScript if want to use renderScript algorithm
+     * @param context    renderscript requires an android context
+     * @param sentBitmap the bitmap to blur, must be mutable
+     * @param radius     the radius to apply in the blur task
+     * @param engine     the algorithm used to blur the pixels
+     * @param workspace  scratch buffers reused between blurs
      * @return the Bitmap blurred.
      */
-    @SuppressLint("NewApi")
-    public static Bitmap apply(Context context, Bitmap sentBitmap, int radius,
-            boolean useRenderScript) {
+    public static Bitmap apply(Context context, Bitmap sentBitmap, int radius, BlurEngine engine,
+            BlurWorkspace workspace) {
 
-        Bitmap bitmap = Bitmap.createScaledBitmap(sentBitmap, sentBitmap.getWidth() / 2,
-                sentBitmap.getHeight() / 2,
-                false);
-
-        /**
-         * If you want to use renderScript algorithm, first check if build version is < JellyBean to use library compat.
-         */
-        if (useRenderScript) {
-            if (Build.VERSION.SDK_INT > Build.VERSION_CODES.JELLY_BEAN) {
-                final RenderScript rs = RenderScript.create(context);
-                //use this constructor for best performance, because it uses USAGE_SHARED mode which reuses memory
-                final Allocation input = Allocation.createFromBitmap(rs, bitmap);
-                final Allocation output = Allocation.createTyped(rs, input.getType());
-                final ScriptIntrinsicBlur script = ScriptIntrinsicBlur.create(rs, Element.U8_4(rs));
-                script.setRadius(radius);
-                script.setInput(input);
-                script.forEach(output);
-                output.copyTo(bitmap);
+        if (radius < 1) {
+            return (null);
+        }
 
-                return bitmap;
-            } else {
+        int w = sentBitmap.getWidth();
+        int h = sentBitmap.getHeight();
+        workspace.ensure(w, h);
+        try {
+            if (has565Kernel(sentBitmap, engine)) {
+                short[] pix = workspace.getPixels565();
+                ShortBuffer buffer = ShortBuffer.wrap(pix, 0, w * h);
+                PickerUITrace.begin(PickerUITrace.COPY_IN);
+                sentBitmap.copyPixelsToBuffer(buffer);
+                PickerUITrace.end();
+                PickerUITrace.begin(PickerUITrace.KERNEL);
                 try {
-                    final android.support.v8.renderscript.RenderScript rs
-                            = android.support.v8.renderscript.RenderScript.create(context);
-                    //use this constructor for best performance, because it uses USAGE_SHARED mode which reuses memory
-                    final android.support.v8.renderscript.Allocation input
-                            = android.support.v8.renderscript.Allocation
-                            .createFromBitmap(rs, bitmap);
-                    final android.support.v8.renderscript.Allocation output
-                            = android.support.v8.renderscript.Allocation
-                            .createTyped(rs, input.getType());
-                    final android.support.v8.renderscript.ScriptIntrinsicBlur script
-                            = android.support.v8.renderscript.ScriptIntrinsicBlur
-                            .create(rs, android.support.v8.renderscript.Element.U8_4(rs));
-                    script.setRadius(radius);
-                    script.setInput(input);
-                    script.forEach(output);
-                    output.copyTo(bitmap);
-                } catch (Exception e) {
-                    bitmap = fastblur(sentBitmap, radius);
+                    if (engine.getClass() == ParallelStackBlurEngine.class) {
+                        ((ParallelStackBlurEngine) engine).blur565(pix, w, h, radius, workspace);
+                    } else {
+                        StackBlur.blur565(pix, w, h, radius, workspace);
+                    }
+                } finally {
+                    PickerUITrace.end();
                 }
-
-                return bitmap;
+                buffer.rewind();
+                PickerUITrace.begin(PickerUITrace.COPY_OUT);
+                sentBitmap.copyPixelsFromBuffer(buffer);
+                PickerUITrace.end();
+                return sentBitmap;
             }
-        } else {
-            return fastblur(sentBitmap, radius);
+
+            int[] pix = workspace.getPixels();
+            PickerUITrace.begin(PickerUITrace.COPY_IN);
+            sentBitmap.getPixels(pix, 0, w, 0, 0, w, h);
+            PickerUITrace.end();
+            blur(context, pix, w, h, radius, engine, workspace);
+            PickerUITrace.begin(PickerUITrace.COPY_OUT);
+            sentBitmap.setPixels(pix, 0, w, 0, 0, w, h);
+            PickerUITrace.end();
+        } finally {
+            workspace.finish();
         }
+
+        return sentBitmap;
     }
 
     /**
-     * Stack Blur v1.0 from
-     * http://www.quasimondo.com/StackBlurForCanvas/StackBlurDemo.html
-     *
-     * Java Author: Mario Klingemann <mario at quasimondo.com>
-     * http://incubator.quasimondo.com
-     * created Feburary 29, 2004
-     * Android port : Yahel Bouaziz <yahel at kayenko.com>
-     * http://www.kayenko.com
-     * ported april 5th, 2012
-     *
-     * This is a compromise between Gaussian Blur and Box blur
-     * It creates much better looking blurs than Box Blur, but is
-     * 7x faster than my Gaussian Blur implementation.
-     *
-     * I called it Stack Blur because this describes best how this
-     * filter works internally: it creates a kind of moving stack
-     * of colors whilst scanning through the image. Thereby it
-     * just has to add one new block of color to the right side
-     * of the stack and remove the leftmost color. The remaining
-     * colors on the topmost layer of the stack are either added on
-     * or reduced by one, depending on if they are on the right or
-     * on the left side of the stack.
-     *
-     * If you are using this algorithm in your code please add
-     * the following line:
-     *
-     * Stack Blur Algorithm by Mario Klingemann <mario@quasimondo.com>
+     * The stack blur engines blur RGB_565 bitmaps without expanding them to 32 bits, see {@link
+     * StackBlur#blur565}. The other engines read them through the ARGB pixels.
      */
-    private static Bitmap fastblur(Bitmap bitmap, int radius) {
+    private static boolean has565Kernel(Bitmap bitmap, BlurEngine engine) {
+        return bitmap.getConfig() == Bitmap.Config.RGB_565
+                && bitmap.getRowBytes() == bitmap.getWidth() * 2
+                && (engine.getClass() == StackBlurEngine.class
+                || engine.getClass() == ParallelStackBlurEngine.class);
+    }
 
-        if (radius < 1) {
-            return (null);
+    /**
+     * Blurs the pixels with the engine and applies the tint of the workspace, see {@link
+     * BlurWorkspace#setTint(BlurTint)}. The engines of the library write the tint with their last
+     * pass; for any other engine it is applied afterwards.
+     */
+    static void blur(Context context, int[] pixels, int width, int height, int radius,
+            BlurEngine engine, BlurWorkspace workspace) {
+        workspace.resetTintApplied();
+        PickerUITrace.begin(PickerUITrace.KERNEL);
+        try {
+            engine.blur(context, pixels, width, height, radius, workspace);
+        } finally {
+            PickerUITrace.end();
         }
-
-        int w = bitmap.getWidth();
-        int h = bitmap.getHeight();
-
-        int[] pix = new int[w * h];
-        Log.e("pix", w + " " + h + " " + pix.length);
-        bitmap.getPixels(pix, 0, w, 0, 0, w, h);
-
-        int wm = w - 1;
-        int hm = h - 1;
-        int wh = w * h;
-        int div = radius + radius + 1;
-
-        int r[] = new int[wh];
-        int g[] = new int[wh];
-        int b[] = new int[wh];
-        int rsum, gsum, bsum, x, y, i, p, yp, yi, yw;
-        int vmin[] = new int[Math.max(w, h)];
-
-        int divsum = (div + 1) >> 1;
-        divsum *= divsum;
-        int dv[] = new int[256 * divsum];
-        for (i = 0; i < 256 * divsum; i++) {
-            dv[i] = (i / divsum);
+        BlurTint tint = workspace.getTint();
+        if (tint != null && !workspace.isTintApplied()) {
+            PickerUITrace.begin(PickerUITrace.TINT);
+            tint.apply(pixels, 0, width * height);
+            PickerUITrace.end();
         }
+    }
 
-        yw = yi = 0;
-
-        int[][] stack = new int[div][3];
-        int stackpointer;
-        int stackstart;
-        int[] sir;
-        int rbs;
-        int r1 = radius + 1;
-        int routsum, goutsum, boutsum;
-        int rinsum, ginsum, binsum;
-
-        for (y = 0; y < h; y++) {
-            rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-            for (i = -radius; i <= radius; i++) {
-                p = pix[yi + Math.min(wm, Math.max(i, 0))];
-                sir = stack[i + radius];
-                sir[0] = (p & 0xff0000) >> 16;
-                sir[1] = (p & 0x00ff00) >> 8;
-                sir[2] = (p & 0x0000ff);
-                rbs = r1 - Math.abs(i);
-                rsum += sir[0] * rbs;
-                gsum += sir[1] * rbs;
-                bsum += sir[2] * rbs;
-                if (i > 0) {
-                    rinsum += sir[0];
-                    ginsum += sir[1];
-                    binsum += sir[2];
-                } else {
-                    routsum += sir[0];
-                    goutsum += sir[1];
-                    boutsum += sir[2];
-                }
-            }
-            stackpointer = radius;
-
-            for (x = 0; x < w; x++) {
-
-                r[yi] = dv[rsum];
-                g[yi] = dv[gsum];
-                b[yi] = dv[bsum];
-
-                rsum -= routsum;
-                gsum -= goutsum;
-                bsum -= boutsum;
-
-                stackstart = stackpointer - radius + div;
-                sir = stack[stackstart % div];
-
-                routsum -= sir[0];
-                goutsum -= sir[1];
-                boutsum -= sir[2];
-
-                if (y == 0) {
-                    vmin[x] = Math.min(x + radius + 1, wm);
-                }
-                p = pix[yw + vmin[x]];
-
-                sir[0] = (p & 0xff0000) >> 16;
-                sir[1] = (p & 0x00ff00) >> 8;
-                sir[2] = (p & 0x0000ff);
-
-                rinsum += sir[0];
-                ginsum += sir[1];
-                binsum += sir[2];
-
-                rsum += rinsum;
-                gsum += ginsum;
-                bsum += binsum;
-
-                stackpointer = (stackpointer + 1) % div;
-                sir = stack[(stackpointer) % div];
-
-                routsum += sir[0];
-                goutsum += sir[1];
-                boutsum += sir[2];
-
-                rinsum -= sir[0];
-                ginsum -= sir[1];
-                binsum -= sir[2];
-
-                yi++;
-            }
-            yw += w;
+    /**
+     * Distance in pixels from which a pixel still changes the result of the engine. Blurring a
+     * region extended this far on every side gives the same pixels as blurring the whole image.
+     *
+     * @param engine the algorithm used to blur
+     * @param radius the radius to apply in the blur task
+     * @return the distance, or -1 if it is not known for the engine
+     */
+    static int support(BlurEngine engine, int radius) {
+        // Exact classes, a subclass may blur differently
+        Class<?> type = engine.getClass();
+        if (type == StackBlurEngine.class || type == ParallelStackBlurEngine.class) {
+            return StackBlur.support(radius);
+        } else if (type == BoxBlurEngine.class) {
+            return BoxBlur.support(radius);
+        } else if (type == GaussianBlurEngine.class) {
+            return GaussianBlur.support(radius);
         }
-        for (x = 0; x < w; x++) {
-            rinsum = ginsum = binsum = routsum = goutsum = boutsum = rsum = gsum = bsum = 0;
-            yp = -radius * w;
-            for (i = -radius; i <= radius; i++) {
-                yi = Math.max(0, yp) + x;
-
-                sir = stack[i + radius];
-
-                sir[0] = r[yi];
-                sir[1] = g[yi];
-                sir[2] = b[yi];
-
-                rbs = r1 - Math.abs(i);
-
-                rsum += r[yi] * rbs;
-                gsum += g[yi] * rbs;
-                bsum += b[yi] * rbs;
-
-                if (i > 0) {
-                    rinsum += sir[0];
-                    ginsum += sir[1];
-                    binsum += sir[2];
-                } else {
-                    routsum += sir[0];
-                    goutsum += sir[1];
-                    boutsum += sir[2];
-                }
-
-                if (i < hm) {
-                    yp += w;
-                }
-            }
-            yi = x;
-            stackpointer = radius;
-            for (y = 0; y < h; y++) {
-                // Preserve alpha channel: ( 0xff000000 & pix[yi] )
-                pix[yi] = (0xff000000 & pix[yi]) | (dv[rsum] << 16) | (dv[gsum] << 8) | dv[bsum];
-
-                rsum -= routsum;
-                gsum -= goutsum;
-                bsum -= boutsum;
-
-                stackstart = stackpointer - radius + div;
-                sir = stack[stackstart % div];
-
-                routsum -= sir[0];
-                goutsum -= sir[1];
-                boutsum -= sir[2];
-
-                if (x == 0) {
-                    vmin[y] = Math.min(y + r1, hm) * w;
-                }
-                p = x + vmin[y];
-
-                sir[0] = r[p];
-                sir[1] = g[p];
-                sir[2] = b[p];
-
-                rinsum += sir[0];
-                ginsum += sir[1];
-                binsum += sir[2];
-
-                rsum += rinsum;
-                gsum += ginsum;
-                bsum += binsum;
-
-                stackpointer = (stackpointer + 1) % div;
-                sir = stack[stackpointer];
-
-                routsum += sir[0];
-                goutsum += sir[1];
-                boutsum += sir[2];
-
-                rinsum -= sir[0];
-                ginsum -= sir[1];
-                binsum -= sir[2];
+        return -1;
+    }
 
-                yi += w;
-            }
+    /**
+     * @param engine the algorithm used to blur
+     * @return the biggest radius the engine blurs with, larger ones are clamped
+     */
+    static int maxRadius(BlurEngine engine) {
+        if (engine.getClass() == DualKawaseBlurEngine.class) {
+            return PickerUIBlur.MAX_DUAL_KAWASE_RADIUS;
         }
-
-        Log.e("pix", w + " " + h + " " + pix.length);
-        bitmap.setPixels(pix, 0, w, 0, 0, w, h);
-
-        return (bitmap);
+        return PickerUIBlur.MAX_BLUR_RADIUS;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package com.dpizarro.uipicker.library.blur;
+
+import android.content.Context;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Algorithm used to blur the snapshot behind the panel. The engines shipped with the library are
+ * available with {@link PickerUIBlur#getBlurEngine(int)}.
+ */
+public interface BlurEngine {
+
+    /**
+     * Blurs the pixels in place. The alpha channel of every pixel is preserved.
+     *
+     * @param context   some engines (RenderScript) require an android context
+     * @param pixels    ARGB pixels of the image, row by row, with a stride of width
+     * @param width     width of the image
+     * @param height    height of the image
+     * @param radius    the radius to apply in the blur task, at least 1
+     * @param workspace scratch buffers reused between blurs
+     */
+    void blur(Context context, int[] pixels, int width, int height, int radius,
+            BlurWorkspace workspace);
+}
@@ -0,0 +1,131 @@
+package com.dpizarro.uipicker.library.blur;
+
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Picks the downscale factor and the radius of a render when the automatic quality is on, see
+ * {@link PickerUIBlurHelper#setAutoQuality(boolean)}.
+ *
+ * The blur should look the same on every screen, so it is kept at a fixed extent in dp: the
+ * extent in pixels is the radius times the downscale factor. The snapshot is made as small as the
+ * extent allows while the radius stays around {@link BlurQuality#TARGET_RADIUS}, a bigger snapshot
+ * costs more without looking any better. It is made smaller, with a smaller radius, when its
+ * buffers wouldn't fit in the memory budget: the configured budget, cut down on devices with a
+ * small heap, little free heap left or flagged as low RAM.
+ */
+final class BlurQuality {
+
+    /**
+     * Radius aimed at, the snapshot pixels are hidden by the blur from about 8
+     */
+    static final int TARGET_RADIUS = 12;
+
+    /**
+     * The downscale factor is not capped to {@link PickerUIBlur#isValidDownscale(float)}, big
+     * screens need more, but a snapshot still needs some pixels.
+     */
+    static final float MAX_AUTO_DOWNSCALE = 16.0f;
+
+    /**
+     * Share of the memory class the blur may use
+     */
+    private static final int MEMORY_CLASS_SHARE = 32;
+
+    /**
+     * Share of the free heap the blur may use
+     */
+    private static final int FREE_HEAP_SHARE = 8;
+
+    private BlurQuality() {
+    }
+
+    /**
+     * @param context          to read the memory class and the low RAM flag
+     * @param configuredBudget maximum bytes, see {@link PickerUIBlur#DEFAULT_BLUR_MEMORY_BUDGET}
+     * @return bytes the buffers of one render may take now
+     */
+    static long memoryBudget(Context context, long configuredBudget) {
+        long budget = configuredBudget;
+        ActivityManager activityManager = (ActivityManager) context
+                .getSystemService(Context.ACTIVITY_SERVICE);
+        if (activityManager != null) {
+            int memoryClass = activityManager.getMemoryClass();
+            if (memoryClass > 0) {
+                budget = Math.min(budget, memoryClass * 1024L * 1024L / MEMORY_CLASS_SHARE);
+            }
+            if (isLowRamDevice(activityManager)) {
+                budget /= 2;
+            }
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return Math.min(budget, freeHeap / FREE_HEAP_SHARE);
+    }
+
+    /**
+     * Bytes per pixel of the snapshot while it is blurred: the bitmap, the pixels copied out of
+     * it and, for 32 bits, the source and result kept by {@link IncrementalBlur}.
+     */
+    static int bytesPerPixel(Bitmap.Config config) {
+        return config == Bitmap.Config.RGB_565 ? 2 + 2 : 4 + 4 + 8;
+    }
+
+    /**
+     * @param width         width of the view to capture, in pixels
+     * @param height        height of the view to capture, in pixels
+     * @param extentPx      extent of the blur in pixels of the screen
+     * @param bytesPerPixel see {@link BlurQuality#bytesPerPixel(Bitmap.Config)}
+     * @param budget        see {@link BlurQuality#memoryBudget(Context, long)}
+     * @return the downscale factor, from {@link PickerUIBlur#MIN_DOWNSCALE} to {@link
+     * BlurQuality#MAX_AUTO_DOWNSCALE}
+     */
+    static float downscale(int width, int height, float extentPx, int bytesPerPixel,
+            long budget) {
+        float factor = Math.max(PickerUIBlur.MIN_DOWNSCALE, extentPx / TARGET_RADIUS);
+        if (budget > 0) {
+            double bytes = (double) width * height * bytesPerPixel;
+            factor = Math.max(factor, (float) Math.sqrt(bytes / budget));
+        } else {
+            factor = MAX_AUTO_DOWNSCALE;
+        }
+        return Math.min(factor, MAX_AUTO_DOWNSCALE);
+    }
+
+    /**
+     * @param extentPx  extent of the blur in pixels of the screen
+     * @param downscale the downscale factor of the snapshot
+     * @return the radius keeping the extent, from {@link PickerUIBlur#MIN_BLUR_RADIUS} to {@link
+     * PickerUIBlur#MAX_BLUR_RADIUS}
+     */
+    static int radius(float extentPx, float downscale) {
+        int radius = Math.round(extentPx / downscale);
+        return Math.max(PickerUIBlur.MIN_BLUR_RADIUS, Math.min(PickerUIBlur.MAX_BLUR_RADIUS,
+                radius));
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static boolean isLowRamDevice(ActivityManager activityManager) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                && activityManager.isLowRamDevice();
+    }
+}
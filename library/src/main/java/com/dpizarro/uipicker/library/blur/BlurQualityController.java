@@ -0,0 +1,172 @@
+package com.dpizarro.uipicker.library.blur;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Lowers the blur quality when the blurs measured on the device are slower than a target latency,
+ * and raises it back when they are well under it.
+ *
+ * Each level downscales the snapshot a step more, with the radius cut by as much so the blur keeps
+ * its extent on screen; from the first level the box and gaussian engines are replaced by the
+ * parallel stack blur, the fastest Java engine. The latency of an open is the capture plus the
+ * blur, averaged over the last opens. There is hysteresis: the quality is lowered after {@link
+ * BlurQualityController#SAMPLES_TO_LOWER} opens over the target, but only raised after {@link
+ * BlurQualityController#SAMPLES_TO_RAISE} opens under half of it, because a level up costs about
+ * 1.5 times more.
+ *
+ * The level reached can be kept in {@link SharedPreferences}, so a cold start begins from it
+ * instead of learning it again.
+ */
+final class BlurQualityController {
+
+    /**
+     * Down scale factor multiplier of each level
+     */
+    private static final float[] DOWNSCALE_STEPS = {1.0f, 1.25f, 1.5f, 2.0f, 2.5f, 3.0f};
+
+    static final int SAMPLES_TO_LOWER = 2;
+    static final int SAMPLES_TO_RAISE = 5;
+
+    /**
+     * Share of the average taken by a new latency
+     */
+    private static final float AVERAGE_WEIGHT = 0.3f;
+
+    /**
+     * The quality is raised under this share of the target
+     */
+    private static final float RAISE_THRESHOLD = 0.5f;
+
+    private static final String PREFERENCES_NAME = "pickerui_blur_quality";
+    private static final String KEY_LEVEL = "level_";
+
+    private final Context mContext;
+    private int mTargetMillis;
+    private boolean mPersist;
+    private int mLevel;
+    /**
+     * Average latency in nanoseconds at the current level, -1 before the first open
+     */
+    private float mAverage = -1;
+    private int mSlowSamples;
+    private int mFastSamples;
+
+    BlurQualityController(Context context) {
+        mContext = context;
+        mPersist = PickerUIBlur.DEFAULT_PERSIST_BLUR_QUALITY;
+        setTargetLatency(PickerUIBlur.DEFAULT_BLUR_TARGET_LATENCY);
+    }
+
+    /**
+     * @param millis latency aimed at in milliseconds, 0 to stop adjusting the quality
+     */
+    void setTargetLatency(int millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Invalid target latency");
+        }
+        mTargetMillis = millis;
+        restart(mPersist && millis > 0 ? getPreferences().getInt(KEY_LEVEL + millis, 0) : 0);
+    }
+
+    /**
+     * @param persist 'true' to keep the level reached for each target latency
+     */
+    void setPersist(boolean persist) {
+        mPersist = persist;
+        if (persist && mTargetMillis > 0) {
+            restart(getPreferences().getInt(KEY_LEVEL + mTargetMillis, mLevel));
+        }
+    }
+
+    boolean isEnabled() {
+        return mTargetMillis > 0;
+    }
+
+    int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * @return how many times more the snapshot is downscaled at the current level
+     */
+    float getDownscaleMultiplier() {
+        return isEnabled() ? DOWNSCALE_STEPS[mLevel] : 1.0f;
+    }
+
+    /**
+     * @param engine the configured engine
+     * @return the engine to use at the current level
+     */
+    BlurEngine getEngine(BlurEngine engine) {
+        Class<?> type = engine.getClass();
+        if (isEnabled() && mLevel > 0
+                && (type == BoxBlurEngine.class || type == GaussianBlurEngine.class)) {
+            return PickerUIBlur.getBlurEngine(PickerUIBlur.ENGINE_PARALLEL_STACK);
+        }
+        return engine;
+    }
+
+    /**
+     * Records the latency of an open at the current level, and changes the level if needed.
+     *
+     * @param nanos capture and blur time in nanoseconds
+     */
+    void onLatency(long nanos) {
+        if (!isEnabled()) {
+            return;
+        }
+        mAverage = mAverage < 0 ? nanos : mAverage + AVERAGE_WEIGHT * (nanos - mAverage);
+        long target = mTargetMillis * 1000000L;
+        if (mAverage > target) {
+            mFastSamples = 0;
+            if (++mSlowSamples >= SAMPLES_TO_LOWER && mLevel < DOWNSCALE_STEPS.length - 1) {
+                changeLevel(mLevel + 1);
+            }
+        } else if (mAverage < target * RAISE_THRESHOLD) {
+            mSlowSamples = 0;
+            if (++mFastSamples >= SAMPLES_TO_RAISE && mLevel > 0) {
+                changeLevel(mLevel - 1);
+            }
+        } else {
+            mSlowSamples = 0;
+            mFastSamples = 0;
+        }
+    }
+
+    private void changeLevel(int level) {
+        restart(level);
+        if (mPersist) {
+            getPreferences().edit().putInt(KEY_LEVEL + mTargetMillis, level).apply();
+        }
+    }
+
+    /**
+     * Starts measuring again at a level, the average of another level says nothing about it.
+     */
+    private void restart(int level) {
+        mLevel = Math.max(0, Math.min(DOWNSCALE_STEPS.length - 1, level));
+        mAverage = -1;
+        mSlowSamples = 0;
+        mFastSamples = 0;
+    }
+
+    private SharedPreferences getPreferences() {
+        return mContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+}
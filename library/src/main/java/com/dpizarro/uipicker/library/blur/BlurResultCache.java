@@ -0,0 +1,258 @@
+package com.dpizarro.uipicker.library.blur;
+
+import com.dpizarro.uipicker.blur.SnapshotFingerprint;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Blurred backgrounds of the last snapshots, so opening the picker again on a screen that didn't
+ * change shows the previous result without blurring.
+ *
+ * Entries are keyed by a {@link SnapshotFingerprint} of the downscaled snapshot, a grid of its
+ * rows and columns, plus the parameters of the blur, and the least recently used entry goes back to the {@link BitmapPool}
+ * when the cache is full. The cache keeps its own copies of the bitmaps, taken from the pool like
+ * the ones it hands out, which can be reused freely. Must be used from the main thread.
+ */
+public class BlurResultCache {
+
+    private final LinkedHashMap<Key, Bitmap> mEntries = new LinkedHashMap<Key, Bitmap>(4, 0.75f,
+            true);
+
+    private final BitmapFingerprint mFingerprint = new BitmapFingerprint();
+
+    private final BitmapPool mBitmapPool;
+    private int mMaxEntries;
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * @param maxEntries maximum number of blurred backgrounds kept
+     * @param bitmapPool pool the bitmaps of the cache are taken from and returned to
+     */
+    public BlurResultCache(int maxEntries, BitmapPool bitmapPool) {
+        mMaxEntries = maxEntries;
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * Builds the key of a snapshot, reading only the rows and columns of the fingerprint.
+     *
+     * @param snapshot        the downscaled snapshot, before blurring it
+     * @param radius          the radius of the blur
+     * @param downScaleFactor the factor the snapshot was downscaled by
+     * @param filterColor     the color of the filter over the blur, -1 if none
+     * @param alpha           the alpha of the blurred background
+     * @param engine          the algorithm used to blur
+     * @return the key of the snapshot, or null if the cache is disabled
+     */
+    Key createKey(Bitmap snapshot, int radius, float downScaleFactor, int filterColor, int alpha,
+            BlurEngine engine) {
+        if (mMaxEntries <= 0) {
+            return null;
+        }
+        return new Key(mFingerprint.of(snapshot), snapshot.getWidth(), snapshot.getHeight(),
+                radius, downScaleFactor, filterColor, alpha, snapshot.getConfig(), engine);
+    }
+
+    /**
+     * Looks for a blurred background and counts the hit or miss.
+     *
+     * @param key the key of the snapshot, null if the cache is disabled
+     * @return a copy of the blurred background from the pool, or null if there is none
+     */
+    Bitmap get(Key key) {
+        if (key == null) {
+            return null;
+        }
+        Bitmap cached = mEntries.get(key);
+        if (cached == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return copy(cached);
+    }
+
+    /**
+     * @param key the key of the snapshot, may be null
+     * @return 'true' if there is a blurred background for the key. Doesn't count as a hit
+     */
+    boolean contains(Key key) {
+        return key != null && mEntries.containsKey(key);
+    }
+
+    /**
+     * Keeps a copy of a blurred background.
+     *
+     * @param key     the key of the snapshot it was blurred from, may be null
+     * @param blurred the blurred background, not retained
+     */
+    void put(Key key, Bitmap blurred) {
+        if (key == null || blurred == null || mMaxEntries <= 0 || mEntries.containsKey(key)) {
+            return;
+        }
+        mEntries.put(key, copy(blurred));
+        trimToSize(mMaxEntries, true);
+    }
+
+    private Bitmap copy(Bitmap bitmap) {
+        Bitmap copy = mBitmapPool.get(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        new Canvas(copy).drawBitmap(bitmap, 0, 0, null);
+        return copy;
+    }
+
+    /**
+     * Sets the maximum number of blurred backgrounds kept, returning entries to the pool if
+     * necessary.
+     *
+     * @param maxEntries maximum number of entries, 0 disables the cache
+     */
+    public void setMaxEntries(int maxEntries) {
+        mMaxEntries = maxEntries;
+        trimToSize(maxEntries, true);
+        if (maxEntries <= 0) {
+            mFingerprint.release();
+        }
+    }
+
+    /**
+     * @return number of renders served from the cache
+     */
+    public int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return number of renders that had to blur the snapshot
+     */
+    public int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Recycles every cached background, used when memory is short. The counters are kept.
+     */
+    public void clear() {
+        trimToSize(0, false);
+        mFingerprint.release();
+    }
+
+    /**
+     * @param reuse 'true' to return the bitmaps of the evicted entries to the pool instead of
+     *              recycling them
+     */
+    private void trimToSize(int maxEntries, boolean reuse) {
+        Iterator<Map.Entry<Key, Bitmap>> iterator = mEntries.entrySet().iterator();
+        while (mEntries.size() > Math.max(0, maxEntries) && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next().getValue();
+            iterator.remove();
+            if (reuse) {
+                mBitmapPool.put(bitmap);
+            } else {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * Reads the rows and columns of the fingerprint from a bitmap.
+     */
+    private static final class BitmapFingerprint extends SnapshotFingerprint {
+
+        private Bitmap mBitmap;
+
+        private long of(Bitmap bitmap) {
+            mBitmap = bitmap;
+            try {
+                return fingerprint(bitmap.getWidth(), bitmap.getHeight());
+            } finally {
+                mBitmap = null;
+            }
+        }
+
+        @Override
+        protected void readPixels(int[] pixels, int x, int y, int width, int height) {
+            mBitmap.getPixels(pixels, 0, width, x, y, width, height);
+        }
+    }
+
+    /**
+     * Fingerprint of a snapshot and the parameters of its blur.
+     */
+    static final class Key {
+
+        private final long mFingerprint;
+        private final int mWidth;
+        private final int mHeight;
+        private final int mRadius;
+        private final float mDownScaleFactor;
+        private final int mFilterColor;
+        private final int mAlpha;
+        private final Bitmap.Config mConfig;
+        private final BlurEngine mEngine;
+
+        private Key(long fingerprint, int width, int height, int radius, float downScaleFactor,
+                int filterColor, int alpha, Bitmap.Config config, BlurEngine engine) {
+            mFingerprint = fingerprint;
+            mWidth = width;
+            mHeight = height;
+            mRadius = radius;
+            mDownScaleFactor = downScaleFactor;
+            mFilterColor = filterColor;
+            mAlpha = alpha;
+            mConfig = config;
+            mEngine = engine;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return mFingerprint == key.mFingerprint && mWidth == key.mWidth
+                    && mHeight == key.mHeight && mRadius == key.mRadius
+                    && Float.compare(mDownScaleFactor, key.mDownScaleFactor) == 0
+                    && mFilterColor == key.mFilterColor && mAlpha == key.mAlpha
+                    && mConfig == key.mConfig && mEngine == key.mEngine;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (mFingerprint ^ (mFingerprint >>> 32));
+            result = 31 * result + mWidth;
+            result = 31 * result + mHeight;
+            result = 31 * result + mRadius;
+            result = 31 * result + Float.floatToIntBits(mDownScaleFactor);
+            result = 31 * result + mFilterColor;
+            result = 31 * result + mAlpha;
+            result = 31 * result + (mConfig != null ? mConfig.hashCode() : 0);
+            result = 31 * result + System.identityHashCode(mEngine);
+            return result;
+        }
+    }
+}
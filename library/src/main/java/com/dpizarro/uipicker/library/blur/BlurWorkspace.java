@@ -0,0 +1,38 @@
+package com.dpizarro.uipicker.library.blur;
+
+import com.dpizarro.uipicker.blur.BlurBuffers;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Scratch buffers of a picker's blurs, see {@link BlurBuffers}. Also keeps the previous result
+ * for {@link IncrementalBlur}.
+ */
+public final class BlurWorkspace extends BlurBuffers {
+
+    /**
+     * @return the last snapshot blurred and its result, kept for {@link IncrementalBlur}. Dropped
+     * with the rest of the buffers
+     */
+    IncrementalBlur.History getHistory() {
+        Object history = getAttachment();
+        if (!(history instanceof IncrementalBlur.History)) {
+            history = new IncrementalBlur.History();
+            setAttachment(history);
+        }
+        return (IncrementalBlur.History) history;
+    }
+}
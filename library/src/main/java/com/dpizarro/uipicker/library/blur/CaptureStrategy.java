@@ -0,0 +1,56 @@
+package com.dpizarro.uipicker.library.blur;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.view.View;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * How the screen behind the panel is captured into the snapshot. The strategies shipped with the
+ * library are available with {@link PickerUIBlur#getCaptureStrategy(int)}.
+ *
+ * A capture starts on the main thread, where the screen can be read, and may be finished on the
+ * blur thread before the snapshot is blurred: the less it does on the main thread, the less the
+ * opening of the panel is delayed.
+ */
+public interface CaptureStrategy {
+
+    /**
+     * Captures a region of the view into the snapshot, or starts to. Called on the main thread.
+     *
+     * @param view     the view to capture, laid out
+     * @param region   region of the view to capture, in the coordinates of the view
+     * @param snapshot bitmap receiving the region, scaled down to its size
+     * @return null if the snapshot is complete, or the rest of the capture
+     */
+    Capture capture(View view, Rect region, Bitmap snapshot);
+
+    /**
+     * Rest of a capture, finished on the blur thread.
+     */
+    interface Capture {
+
+        /**
+         * Completes the snapshot. Called once on the blur thread, even if the snapshot is no
+         * longer wanted, so nothing writes the bitmap after it returned 'true'.
+         *
+         * @param snapshot the bitmap given to {@link CaptureStrategy#capture(View, Rect, Bitmap)}
+         * @return 'false' if the capture failed, the snapshot is then drawn on the main thread
+         */
+        boolean finish(Bitmap snapshot);
+    }
+}
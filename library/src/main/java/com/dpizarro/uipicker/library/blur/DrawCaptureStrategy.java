@@ -0,0 +1,59 @@
+package com.dpizarro.uipicker.library.blur;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.DrawFilter;
+import android.graphics.Paint;
+import android.graphics.PaintFlagsDrawFilter;
+import android.graphics.Rect;
+import android.view.View;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Draws the view on the main thread through a scaled canvas straight into the small bitmap, so
+ * the full resolution snapshot is never allocated. This is the only resampling step before the
+ * blur, for every engine.
+ *
+ * Only a region of the view is captured: the canvas is moved so the region fills the bitmap, the
+ * views out of it are skipped by their parents.
+ */
+public class DrawCaptureStrategy implements CaptureStrategy {
+
+    /**
+     * Filters the bitmaps of the views while they are drawn downscaled in the snapshot.
+     */
+    private static final DrawFilter SNAPSHOT_DRAW_FILTER = new PaintFlagsDrawFilter(0,
+            Paint.FILTER_BITMAP_FLAG);
+
+    @Override
+    public Capture capture(View view, Rect region, Bitmap snapshot) {
+        Canvas canvas = createCanvas(snapshot, region.width(), region.height());
+        canvas.translate(-region.left, -region.top);
+        view.draw(canvas);
+        return null;
+    }
+
+    /**
+     * @return a canvas over the snapshot scaled so an area of the given size fills it
+     */
+    static Canvas createCanvas(Bitmap snapshot, int width, int height) {
+        Canvas canvas = new Canvas(snapshot);
+        canvas.scale((float) snapshot.getWidth() / width, (float) snapshot.getHeight() / height);
+        canvas.setDrawFilter(SNAPSHOT_DRAW_FILTER);
+        return canvas;
+    }
+}
@@ -0,0 +1,317 @@
+package com.dpizarro.uipicker.library.blur;
+
+import com.dpizarro.uipicker.blur.BlurTint;
+import com.dpizarro.uipicker.library.metrics.PickerUITrace;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Blurs a snapshot reusing the result of the previous one.
+ *
+ * The last snapshot and its blur are kept in the {@link BlurWorkspace}. The new snapshot is
+ * compared with the last one in tiles of {@link #TILE_SIZE} pixels and only the tiles that
+ * changed are blurred again, together with a halo as wide as the reach of the engine (see {@link
+ * Blur#support(BlurEngine, int)}), so the result is the same as blurring the whole snapshot.
+ * Opening the picker again on a screen where only a text field changed costs a fraction of a
+ * full blur.
+ *
+ * Falls back to a full blur the first time, when the size, radius, engine or tint change, when
+ * the reach of the engine is not known (RenderScript) or when too much of the snapshot changed.
+ */
+class IncrementalBlur {
+
+    /**
+     * Side of the tiles compared between snapshots, in pixels of the downscaled snapshot.
+     */
+    static final int TILE_SIZE = 16;
+
+    /**
+     * Above this fraction of the snapshot to blur again, a full blur is cheaper.
+     */
+    private static final float MAX_DIRTY_FRACTION = 0.5f;
+
+    /**
+     * Process the image with the selected engine, reusing the previous result when possible. The
+     * bitmap is blurred in place.
+     *
+     * @param context    renderscript requires an android context
+     * @param sentBitmap the bitmap to blur, must be mutable
+     * @param radius     the radius to apply in the blur task
+     * @param engine     the algorithm used to blur the pixels
+     * @param workspace  scratch buffers and previous result
+     * @return the Bitmap blurred.
+     */
+    static Bitmap apply(Context context, Bitmap sentBitmap, int radius, BlurEngine engine,
+            BlurWorkspace workspace) {
+
+        if (radius < 1) {
+            return (null);
+        }
+
+        int w = sentBitmap.getWidth();
+        int h = sentBitmap.getHeight();
+        if (sentBitmap.getConfig() == Bitmap.Config.RGB_565) {
+            // The previous result would be kept in 32 bits, the 16 bit pipeline is always blurred
+            // in full
+            workspace.ensure(w, h);
+            try {
+                workspace.getHistory().clear();
+            } finally {
+                workspace.finish();
+            }
+            return Blur.apply(context, sentBitmap, radius, engine, workspace);
+        }
+
+        workspace.ensure(w, h);
+        try {
+            int[] pix = workspace.getPixels();
+            PickerUITrace.begin(PickerUITrace.COPY_IN);
+            sentBitmap.getPixels(pix, 0, w, 0, 0, w, h);
+            PickerUITrace.end();
+
+            History history = workspace.getHistory();
+            int halo = Blur.support(engine, radius);
+            try {
+                if (halo >= 0 && history.matches(w, h, radius, engine, workspace.getTint())
+                        && blurDirtyTiles(context, pix, w, h, radius, halo, engine, workspace,
+                        history)) {
+                    PickerUITrace.begin(PickerUITrace.COPY_OUT);
+                    sentBitmap.setPixels(history.mBlurred, 0, w, 0, 0, w, h);
+                    PickerUITrace.end();
+                } else {
+                    blurFull(context, pix, w, h, radius, halo, engine, workspace, history);
+                    PickerUITrace.begin(PickerUITrace.COPY_OUT);
+                    sentBitmap.setPixels(pix, 0, w, 0, 0, w, h);
+                    PickerUITrace.end();
+                }
+            } catch (RuntimeException e) {
+                // Part of the previous result may already be overwritten
+                history.invalidate();
+                throw e;
+            }
+        } finally {
+            workspace.finish();
+        }
+
+        return sentBitmap;
+    }
+
+    private static void blurFull(Context context, int[] pix, int w, int h, int radius, int halo,
+            BlurEngine engine, BlurWorkspace workspace, History history) {
+        PickerUITrace.begin(PickerUITrace.BLUR_FULL);
+        try {
+            blurFullTraced(context, pix, w, h, radius, halo, engine, workspace, history);
+        } finally {
+            PickerUITrace.end();
+        }
+    }
+
+    private static void blurFullTraced(Context context, int[] pix, int w, int h, int radius,
+            int halo, BlurEngine engine, BlurWorkspace workspace, History history) {
+        int size = w * h;
+        if (halo < 0) {
+            // Nothing can be reused with this engine, don't keep two more copies of the snapshot
+            history.clear();
+            Blur.blur(context, pix, w, h, radius, engine, workspace);
+            return;
+        }
+
+        history.invalidate();
+        history.mSource = ensureSize(history.mSource, size);
+        System.arraycopy(pix, 0, history.mSource, 0, size);
+        Blur.blur(context, pix, w, h, radius, engine, workspace);
+        history.mBlurred = ensureSize(history.mBlurred, size);
+        System.arraycopy(pix, 0, history.mBlurred, 0, size);
+        history.set(w, h, radius, engine, workspace.getTint());
+    }
+
+    /**
+     * Blurs again the regions of the snapshot that changed, writing them in the previous result.
+     *
+     * @return 'false' if too much changed and a full blur should be done instead, nothing has been
+     * modified in that case
+     */
+    private static boolean blurDirtyTiles(Context context, int[] pix, int w, int h, int radius,
+            int halo, BlurEngine engine, BlurWorkspace workspace, History history) {
+        PickerUITrace.begin(PickerUITrace.BLUR_DIRTY);
+        try {
+            return blurDirtyTilesTraced(context, pix, w, h, radius, halo, engine, workspace,
+                    history);
+        } finally {
+            PickerUITrace.end();
+        }
+    }
+
+    private static boolean blurDirtyTilesTraced(Context context, int[] pix, int w, int h,
+            int radius, int halo, BlurEngine engine, BlurWorkspace workspace, History history) {
+        int tilesX = (w + TILE_SIZE - 1) / TILE_SIZE;
+        int tilesY = (h + TILE_SIZE - 1) / TILE_SIZE;
+        boolean[] dirty = history.mDirty = ensureSize(history.mDirty, tilesX * tilesY);
+        int[] source = history.mSource;
+
+        // Compare the tiles and add up the area that would be blurred again
+        long cost = 0;
+        for (int ty = 0; ty < tilesY; ty++) {
+            int y0 = ty * TILE_SIZE;
+            int y1 = Math.min(h, y0 + TILE_SIZE);
+            int run = -1;
+            for (int tx = 0; tx <= tilesX; tx++) {
+                boolean changed = tx < tilesX && isTileDirty(pix, source, w, tx * TILE_SIZE,
+                        Math.min(w, (tx + 1) * TILE_SIZE), y0, y1);
+                if (tx < tilesX) {
+                    dirty[ty * tilesX + tx] = changed;
+                }
+                if (changed && run == -1) {
+                    run = tx;
+                } else if (!changed && run != -1) {
+                    int sx0 = Math.max(0, run * TILE_SIZE - 2 * halo);
+                    int sx1 = Math.min(w, tx * TILE_SIZE + 2 * halo);
+                    int sy0 = Math.max(0, y0 - 2 * halo);
+                    int sy1 = Math.min(h, y1 + 2 * halo);
+                    cost += (long) (sx1 - sx0) * (sy1 - sy0);
+                    run = -1;
+                }
+            }
+        }
+        if (cost > w * h * MAX_DIRTY_FRACTION) {
+            return false;
+        }
+
+        // Every run of changed tiles in a row of tiles is blurred as one region
+        int[] blurred = history.mBlurred;
+        for (int ty = 0; ty < tilesY; ty++) {
+            int y0 = ty * TILE_SIZE;
+            int y1 = Math.min(h, y0 + TILE_SIZE);
+            int run = -1;
+            for (int tx = 0; tx <= tilesX; tx++) {
+                boolean changed = tx < tilesX && dirty[ty * tilesX + tx];
+                if (changed && run == -1) {
+                    run = tx;
+                } else if (!changed && run != -1) {
+                    blurRegion(context, pix, blurred, w, h, radius, halo, engine, workspace,
+                            history, run * TILE_SIZE, Math.min(w, tx * TILE_SIZE), y0, y1);
+                    run = -1;
+                }
+            }
+        }
+
+        System.arraycopy(pix, 0, source, 0, w * h);
+        return true;
+    }
+
+    /**
+     * Blurs the region [x0, x1) x [y0, y1) extended by the halo. The pixels it needs are read
+     * from twice the halo around it.
+     */
+    private static void blurRegion(Context context, int[] pix, int[] blurred, int w, int h,
+            int radius, int halo, BlurEngine engine, BlurWorkspace workspace, History history,
+            int x0, int x1, int y0, int y1) {
+        // Pixels whose result changes
+        int rx0 = Math.max(0, x0 - halo);
+        int rx1 = Math.min(w, x1 + halo);
+        int ry0 = Math.max(0, y0 - halo);
+        int ry1 = Math.min(h, y1 + halo);
+        // Pixels they depend on
+        int sx0 = Math.max(0, rx0 - halo);
+        int sx1 = Math.min(w, rx1 + halo);
+        int sy0 = Math.max(0, ry0 - halo);
+        int sy1 = Math.min(h, ry1 + halo);
+        int sw = sx1 - sx0;
+        int sh = sy1 - sy0;
+
+        int[] region = history.mRegion = ensureSize(history.mRegion, sw * sh);
+        for (int y = sy0; y < sy1; y++) {
+            System.arraycopy(pix, y * w + sx0, region, (y - sy0) * sw, sw);
+        }
+
+        // The workspace was sized for the whole snapshot, it fits any region of it
+        Blur.blur(context, region, sw, sh, radius, engine, workspace);
+
+        for (int y = ry0; y < ry1; y++) {
+            System.arraycopy(region, (y - sy0) * sw + rx0 - sx0, blurred, y * w + rx0, rx1 - rx0);
+        }
+    }
+
+    private static boolean isTileDirty(int[] pix, int[] source, int w, int x0, int x1, int y0,
+            int y1) {
+        for (int y = y0; y < y1; y++) {
+            for (int i = y * w + x0, end = y * w + x1; i < end; i++) {
+                if (pix[i] != source[i]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int[] ensureSize(int[] buffer, int size) {
+        return buffer == null || buffer.length < size ? new int[size] : buffer;
+    }
+
+    private static boolean[] ensureSize(boolean[] buffer, int size) {
+        return buffer == null || buffer.length < size ? new boolean[size] : buffer;
+    }
+
+    /**
+     * The last snapshot blurred, its result and the parameters of the blur.
+     */
+    static final class History {
+
+        private int[] mSource;
+        private int[] mBlurred;
+        private int[] mRegion;
+        private boolean[] mDirty;
+        private boolean mValid;
+        private int mWidth;
+        private int mHeight;
+        private int mRadius;
+        private BlurEngine mEngine;
+        private BlurTint mTint;
+
+        private boolean matches(int width, int height, int radius, BlurEngine engine,
+                BlurTint tint) {
+            return mValid && mWidth == width && mHeight == height && mRadius == radius
+                    && mEngine == engine && mTint == tint;
+        }
+
+        private void set(int width, int height, int radius, BlurEngine engine, BlurTint tint) {
+            mWidth = width;
+            mHeight = height;
+            mRadius = radius;
+            mEngine = engine;
+            mTint = tint;
+            mValid = true;
+        }
+
+        private void invalidate() {
+            mValid = false;
+            mEngine = null;
+            mTint = null;
+        }
+
+        private void clear() {
+            invalidate();
+            mSource = null;
+            mBlurred = null;
+            mRegion = null;
+            mDirty = null;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.dpizarro.uipicker.library.blur;
+
+import com.dpizarro.uipicker.blur.BlurBuffers;
+import com.dpizarro.uipicker.blur.BlurTint;
+import com.dpizarro.uipicker.blur.DivisionTables;
+import com.dpizarro.uipicker.blur.StackBlur;
+
+import android.content.Context;
+import android.os.Process;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Stack blur running on every core. The horizontal pass is split in bands of rows and the
+ * vertical pass in bands of columns, each band with its own stack and sums, so the result is
+ * exactly the same as {@link StackBlurEngine}.
+ *
+ * The bands run on a pool shared by every picker with one thread less than the number of cores,
+ * the calling thread blurs the first band. Small snapshots are blurred on the calling thread
+ * because the handoff would cost more than the blur. The threads of the pool run the bands at
+ * the priority of the blur thread, see {@link ParallelStackBlurEngine#setThreadPriority(int)}.
+ */
+public class ParallelStackBlurEngine implements BlurEngine {
+
+    /**
+     * Snapshots with less pixels than this are not worth splitting
+     */
+    private static final int MIN_PIXELS_PARALLEL = 128 * 128;
+
+    /**
+     * Minimum number of rows or columns of a band
+     */
+    private static final int MIN_BAND_SIZE = 16;
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private static final int MAX_BANDS = Math.max(1, Math.min(CPU_COUNT, 8));
+
+    private static ExecutorService sExecutor;
+
+    /**
+     * Priority the bands run at, the last one set by a picker
+     */
+    private static volatile int sThreadPriority = PickerUIBlur.DEFAULT_BLUR_THREAD_PRIORITY;
+
+    /**
+     * Priority of the threads of the pool, set with the priority of the blur thread so the bands
+     * don't compete with the main thread more than the rest of the blur. The pool is shared, the
+     * last priority set applies to every picker.
+     *
+     * @param priority a priority of {@link Process}
+     */
+    static void setThreadPriority(int priority) {
+        sThreadPriority = priority;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_BANDS - 1, MAX_BANDS - 1,
+                    30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactory() {
+                        private final AtomicInteger mCount = new AtomicInteger(1);
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable,
+                                    "PickerUIBlur #" + mCount.getAndIncrement());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+            executor.allowCoreThreadTimeOut(true);
+            sExecutor = executor;
+        }
+        return sExecutor;
+    }
+
+    @Override
+    public void blur(Context context, int[] pixels, int width, int height, int radius,
+            BlurWorkspace workspace) {
+        int bands = Math.min(MAX_BANDS, Math.min(width, height) / MIN_BAND_SIZE);
+        if (bands < 2 || width * height < MIN_PIXELS_PARALLEL) {
+            StackBlur.blur(pixels, width, height, radius, workspace);
+            return;
+        }
+
+        int[] dv = DivisionTables.get(radius);
+        int[][] stacks = workspace.getStacks(radius, bands);
+        int[] vminX = workspace.getVminX();
+        int[] vminY = workspace.getVminY();
+        StackBlur.fillVmin(vminX, vminY, width, height, radius);
+
+        // Every row has to be blurred before the columns start
+        runBands(new Pass(pixels, null, width, height, radius, dv, stacks, vminX, true, null,
+                workspace), bands);
+        runBands(new Pass(pixels, null, width, height, radius, dv, stacks, vminY, false,
+                workspace.takeTint(), workspace), bands);
+    }
+
+    /**
+     * Same bands over RGB_565 pixels, see {@link StackBlur#blur565}.
+     */
+    void blur565(short[] pixels, int width, int height, int radius, BlurWorkspace workspace) {
+        int bands = Math.min(MAX_BANDS, Math.min(width, height) / MIN_BAND_SIZE);
+        if (bands < 2 || width * height < MIN_PIXELS_PARALLEL) {
+            StackBlur.blur565(pixels, width, height, radius, workspace);
+            return;
+        }
+
+        int[] dv = DivisionTables.get(radius);
+        int[][] stacks = workspace.getStacks(radius, bands);
+        int[] vminX = workspace.getVminX();
+        int[] vminY = workspace.getVminY();
+        StackBlur.fillVmin(vminX, vminY, width, height, radius);
+
+        runBands(new Pass(null, pixels, width, height, radius, dv, stacks, vminX, true, null,
+                workspace), bands);
+        runBands(new Pass(null, pixels, width, height, radius, dv, stacks, vminY, false,
+                workspace.takeTint(), workspace), bands);
+    }
+
+    private void runBands(Pass pass, int bands) {
+        CountDownLatch done = new CountDownLatch(bands - 1);
+        Band[] workers = new Band[bands - 1];
+        ExecutorService executor = getExecutor();
+        for (int i = 1; i < bands; i++) {
+            workers[i - 1] = new Band(pass, i, bands, done);
+            executor.execute(workers[i - 1]);
+        }
+
+        try {
+            pass.run(0, bands);
+        } finally {
+            // The other bands are still using the buffers, even if this one was cancelled
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for (Band worker : workers) {
+            if (worker.mError instanceof CancellationException) {
+                throw (CancellationException) worker.mError;
+            } else if (worker.mError != null) {
+                throw new RuntimeException("Error while blurring a band", worker.mError);
+            }
+        }
+    }
+
+    /**
+     * One of the two passes of the stack blur, split in bands. Either the ARGB or the RGB_565
+     * pixels are set.
+     */
+    private static class Pass {
+
+        private final int[] mPixels, mDv, mVmin;
+        private final short[] mPixels565;
+        private final int[][] mStacks;
+        private final int mWidth, mHeight, mRadius;
+        private final boolean mRows;
+        private final BlurTint mTint;
+        private final BlurWorkspace mWorkspace;
+
+        private Pass(int[] pixels, short[] pixels565, int width, int height, int radius,
+                int[] dv, int[][] stacks, int[] vmin, boolean rows, BlurTint tint,
+                BlurWorkspace workspace) {
+            mPixels = pixels;
+            mPixels565 = pixels565;
+            mWidth = width;
+            mHeight = height;
+            mRadius = radius;
+            mDv = dv;
+            mStacks = stacks;
+            mVmin = vmin;
+            mRows = rows;
+            mTint = tint;
+            mWorkspace = workspace;
+        }
+
+        private void run(int band, int bands) {
+            int size = mRows ? mHeight : mWidth;
+            int start = size * band / bands;
+            int end = size * (band + 1) / bands;
+            for (int i = start; i < end; i += BlurBuffers.CANCEL_CHECK_LINES) {
+                mWorkspace.checkCancelled();
+                int last = Math.min(end, i + BlurBuffers.CANCEL_CHECK_LINES);
+                if (mPixels565 != null) {
+                    if (mRows) {
+                        StackBlur.blurRows565(mPixels565, mWidth, mRadius, mDv, mStacks[band],
+                                mVmin, i, last);
+                    } else {
+                        StackBlur.blurColumns565(mPixels565, mWidth, mHeight, mRadius, mDv,
+                                mStacks[band], mVmin, mTint, i, last);
+                    }
+                } else if (mRows) {
+                    StackBlur.blurRows(mPixels, mWidth, mRadius, mDv, mStacks[band], mVmin, i,
+                            last);
+                } else {
+                    StackBlur.blurColumns(mPixels, mWidth, mHeight, mRadius, mDv, mStacks[band],
+                            mVmin, mTint, i, last);
+                }
+            }
+        }
+    }
+
+    private static class Band implements Runnable {
+
+        private final Pass mPass;
+        private final int mBand;
+        private final int mBands;
+        private final CountDownLatch mDone;
+        private volatile Throwable mError;
+
+        private Band(Pass pass, int band, int bands, CountDownLatch done) {
+            mPass = pass;
+            mBand = band;
+            mBands = bands;
+            mDone = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Process.setThreadPriority(sThreadPriority);
+                mPass.run(mBand, mBands);
+            } catch (Throwable t) {
+                mError = t;
+            } finally {
+                mDone.countDown();
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.dpizarro.uipicker.library.blur;
 
+import android.os.Process;
+
 /*
  * Copyright (C) 2015 David Pizarro
  *
@@ -25,10 +27,51 @@ public class PickerUIBlur {
      * Minimum valid value of down scale factor.
      */
     public static final float MIN_DOWNSCALE = 1.0f;
+    /**
+     * Stack blur engine, see {@link StackBlurEngine}
+     */
+    public static final int ENGINE_STACK = 0;
+    /**
+     * Three pass box blur engine, see {@link BoxBlurEngine}
+     */
+    public static final int ENGINE_BOX = 1;
+    /**
+     * Fixed point gaussian blur engine, see {@link GaussianBlurEngine}
+     */
+    public static final int ENGINE_GAUSSIAN = 2;
+    /**
+     * RenderScript blur engine, see {@link RenderScriptBlurEngine}
+     */
+    public static final int ENGINE_RENDERSCRIPT = 3;
+    /**
+     * Stack blur split in bands over every core, see {@link ParallelStackBlurEngine}
+     */
+    public static final int ENGINE_PARALLEL_STACK = 4;
+    /**
+     * Dual filter pyramid blur for very large radius values, see {@link DualKawaseBlurEngine}
+     */
+    public static final int ENGINE_DUAL_KAWASE = 5;
+    /**
+     * Screen drawn into the snapshot on the main thread, see {@link DrawCaptureStrategy}
+     */
+    public static final int CAPTURE_DRAW = 0;
+    /**
+     * Screen recorded on the main thread and drawn on the blur thread, see {@link
+     * PictureCaptureStrategy}
+     */
+    public static final int CAPTURE_PICTURE = 1;
+    /**
+     * Screen copied from the window surface, see {@link PixelCopyCaptureStrategy}
+     */
+    public static final int CAPTURE_PIXEL_COPY = 2;
     /**
      * Maximum valid value of Blur radius.
      */
-    private static final int MAX_BLUR_RADIUS = 25;
+    static final int MAX_BLUR_RADIUS = 25;
+    /**
+     * Maximum valid value of Blur radius with {@link PickerUIBlur#ENGINE_DUAL_KAWASE}.
+     */
+    public static final int MAX_DUAL_KAWASE_RADIUS = 250;
     /**
      * Maximum valid value of down scale factor.
      */
@@ -41,6 +84,18 @@ public class PickerUIBlur {
      * Default use of renderscript algorithm
      */
     public static boolean DEFAULT_USE_BLUR_RENDERSCRIPT = false;
+    /**
+     * Default engine used to blur the background
+     */
+    public static int DEFAULT_BLUR_ENGINE = ENGINE_PARALLEL_STACK;
+    /**
+     * Default strategy used to capture the screen
+     */
+    public static int DEFAULT_CAPTURE_STRATEGY = CAPTURE_DRAW;
+    /**
+     * Default use of RGB_565 bitmaps for the snapshot and the blurred background
+     */
+    public static boolean DEFAULT_USE_BLUR_RGB_565 = false;
     /**
      * Default Blur radius used for the background
      */
@@ -50,9 +105,81 @@ public class PickerUIBlur {
      */
     public static float DEFAULT_DOWNSCALE_FACTOR = 5.0f;
     /**
-     * Default alpha to apply in blurred image
+     * Default behaviour of picking the down scale factor and the radius for each render
      */
-    public static int CONSTANT_DEFAULT_ALPHA = 100;
+    public static boolean DEFAULT_AUTO_BLUR_QUALITY = false;
+    /**
+     * Extent of the blur in dp kept by the automatic quality, about the default radius and down
+     * scale factor on an xhdpi screen
+     */
+    public static float DEFAULT_AUTO_BLUR_EXTENT_DP = 36.0f;
+    /**
+     * Default maximum memory, in bytes, of the buffers of one render with the automatic quality
+     */
+    public static int DEFAULT_BLUR_MEMORY_BUDGET = 2 * 1024 * 1024;
+    /**
+     * Default capture and blur time aimed at, in milliseconds, 0 to keep the quality
+     */
+    public static int DEFAULT_BLUR_TARGET_LATENCY = 0;
+    /**
+     * Default behaviour of keeping the quality reached for the target latency
+     */
+    public static boolean DEFAULT_PERSIST_BLUR_QUALITY = false;
+    /**
+     * Default alpha to apply in blurred image, opaque
+     */
+    public static int CONSTANT_DEFAULT_ALPHA = 255;
+    /**
+     * Default maximum memory, in bytes, kept to reuse the snapshot and blurred bitmaps
+     */
+    public static int DEFAULT_BITMAP_POOL_SIZE = 4 * 1024 * 1024;
+    /**
+     * Default number of blurred backgrounds kept to open the picker again without blurring
+     */
+    public static int DEFAULT_BLUR_CACHE_SIZE = 2;
+    /**
+     * Default behaviour of blurring the screen ahead when the main thread is idle
+     */
+    public static boolean DEFAULT_PREPARE_ON_IDLE = false;
+    /**
+     * Default behaviour of updating the blurred background while the panel is shown
+     */
+    public static boolean DEFAULT_LIVE_BLUR = false;
+    /**
+     * Default maximum number of updates per second of the live blurred background
+     */
+    public static int DEFAULT_LIVE_BLUR_MAX_FPS = 10;
+    /**
+     * Default behaviour of showing a coarse background while blurring
+     */
+    public static boolean DEFAULT_PROGRESSIVE_BLUR = false;
+    /**
+     * Default behaviour of blurring only the region behind the panel
+     */
+    public static boolean DEFAULT_BLUR_PANEL_ONLY = false;
+    /**
+     * Default color of the scrim over the screen above the panel when only the region behind the
+     * panel is blurred
+     */
+    public static int DEFAULT_BLUR_SCRIM_COLOR = 0x66000000;
+    /**
+     * Duration in milliseconds of the fade from the coarse to the blurred background
+     */
+    public static int CROSS_FADE_DURATION = 200;
+    /**
+     * Default priority of the thread running the blur
+     */
+    public static int DEFAULT_BLUR_THREAD_PRIORITY = Process.THREAD_PRIORITY_BACKGROUND;
+
+    private static final BlurEngine STACK_ENGINE = new StackBlurEngine();
+    private static final BlurEngine BOX_ENGINE = new BoxBlurEngine();
+    private static final BlurEngine GAUSSIAN_ENGINE = new GaussianBlurEngine();
+    private static final BlurEngine RENDERSCRIPT_ENGINE = new RenderScriptBlurEngine();
+    private static final BlurEngine PARALLEL_STACK_ENGINE = new ParallelStackBlurEngine();
+    private static final BlurEngine DUAL_KAWASE_ENGINE = new DualKawaseBlurEngine();
+    private static final CaptureStrategy DRAW_CAPTURE = new DrawCaptureStrategy();
+    private static final CaptureStrategy PICTURE_CAPTURE = new PictureCaptureStrategy();
+    private static final CaptureStrategy PIXEL_COPY_CAPTURE = new PixelCopyCaptureStrategy();
 
     /**
      * Validates if the radius value chosen is valid.
@@ -66,6 +193,22 @@ public class PickerUIBlur {
         return value >= MIN_BLUR_RADIUS && value <= MAX_BLUR_RADIUS;
     }
 
+    /**
+     * Validates if the radius value chosen is valid for an engine.
+     *
+     * @param engine Engine selected
+     * @param value  Radius value selected
+     * @return Returns 'true' if the value is between {@link PickerUIBlur#MIN_BLUR_RADIUS} and
+     * {@link PickerUIBlur#MAX_DUAL_KAWASE_RADIUS} for {@link PickerUIBlur#ENGINE_DUAL_KAWASE}, or
+     * {@link PickerUIBlur#MAX_BLUR_RADIUS} for the other engines
+     */
+    public static boolean isValidBlurRadius(int engine, int value) {
+        if (engine == ENGINE_DUAL_KAWASE) {
+            return value >= MIN_BLUR_RADIUS && value <= MAX_DUAL_KAWASE_RADIUS;
+        }
+        return isValidBlurRadius(value);
+    }
+
     /**
      * Validates if the scale chosen is valid.
      *
@@ -76,4 +219,72 @@ public class PickerUIBlur {
     public static boolean isValidDownscale(float value) {
         return value >= MIN_DOWNSCALE && value <= MAX_DOWNSCALE;
     }
+
+    /**
+     * Validates if the engine chosen is valid.
+     *
+     * @param value Engine selected
+     * @return Returns 'true' if the value is one of {@link PickerUIBlur#ENGINE_STACK}, {@link
+     * PickerUIBlur#ENGINE_BOX}, {@link PickerUIBlur#ENGINE_GAUSSIAN}, {@link
+     * PickerUIBlur#ENGINE_RENDERSCRIPT}, {@link PickerUIBlur#ENGINE_PARALLEL_STACK} or {@link
+     * PickerUIBlur#ENGINE_DUAL_KAWASE}
+     */
+    public static boolean isValidBlurEngine(int value) {
+        return value >= ENGINE_STACK && value <= ENGINE_DUAL_KAWASE;
+    }
+
+    /**
+     * Returns the shared instance of an engine.
+     *
+     * @param engine Engine selected
+     * @return the {@link BlurEngine} for the value
+     */
+    public static BlurEngine getBlurEngine(int engine) {
+        switch (engine) {
+            case ENGINE_STACK:
+                return STACK_ENGINE;
+            case ENGINE_BOX:
+                return BOX_ENGINE;
+            case ENGINE_GAUSSIAN:
+                return GAUSSIAN_ENGINE;
+            case ENGINE_RENDERSCRIPT:
+                return RENDERSCRIPT_ENGINE;
+            case ENGINE_PARALLEL_STACK:
+                return PARALLEL_STACK_ENGINE;
+            case ENGINE_DUAL_KAWASE:
+                return DUAL_KAWASE_ENGINE;
+            default:
+                throw new IllegalArgumentException("Invalid blur engine");
+        }
+    }
+
+    /**
+     * Validates if the capture strategy chosen is valid.
+     *
+     * @param value Capture strategy selected
+     * @return Returns 'true' if the value is one of {@link PickerUIBlur#CAPTURE_DRAW}, {@link
+     * PickerUIBlur#CAPTURE_PICTURE} or {@link PickerUIBlur#CAPTURE_PIXEL_COPY}
+     */
+    public static boolean isValidCaptureStrategy(int value) {
+        return value >= CAPTURE_DRAW && value <= CAPTURE_PIXEL_COPY;
+    }
+
+    /**
+     * Returns the shared instance of a capture strategy. Main thread only.
+     *
+     * @param strategy Capture strategy selected
+     * @return the {@link CaptureStrategy} for the value
+     */
+    public static CaptureStrategy getCaptureStrategy(int strategy) {
+        switch (strategy) {
+            case CAPTURE_DRAW:
+                return DRAW_CAPTURE;
+            case CAPTURE_PICTURE:
+                return PICTURE_CAPTURE;
+            case CAPTURE_PIXEL_COPY:
+                return PIXEL_COPY_CAPTURE;
+            default:
+                throw new IllegalArgumentException("Invalid capture strategy");
+        }
+    }
 }
@@ -1,19 +1,29 @@
 package com.dpizarro.uipicker.library.blur;
 
+import com.dpizarro.uipicker.blur.BlurBuffers;
+import com.dpizarro.uipicker.blur.BlurTint;
+import com.dpizarro.uipicker.blur.DivisionTables;
 import com.dpizarro.uipicker.library.R;
+import com.dpizarro.uipicker.library.metrics.PickerUIMetrics;
+import com.dpizarro.uipicker.library.metrics.PickerUITrace;
 
 import android.app.Activity;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.ColorFilter;
 import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffColorFilter;
+import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LayerDrawable;
+import android.graphics.drawable.TransitionDrawable;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
@@ -44,7 +54,7 @@ public class PickerUIBlurHelper {
     /**
      * Down scale factor to reduce blurring time and memory allocation.
      */
-    private static float mDownScaleFactor = PickerUIBlur.DEFAULT_DOWNSCALE_FACTOR;
+    private float mDownScaleFactor = PickerUIBlur.DEFAULT_DOWNSCALE_FACTOR;
 
     /**
      * An imageview to display the blurred snapshot/bitmap
@@ -56,52 +66,257 @@ public class PickerUIBlurHelper {
      */
     private int mBlurRadius = PickerUIBlur.DEFAULT_BLUR_RADIUS;
 
+    /**
+     * Picks the down scale factor and the radius of each render, see {@link BlurQuality}
+     */
+    private boolean mAutoQuality = PickerUIBlur.DEFAULT_AUTO_BLUR_QUALITY;
+    private int mMemoryBudget = PickerUIBlur.DEFAULT_BLUR_MEMORY_BUDGET;
+    /**
+     * Down scale factor and radius of the last snapshot taken
+     */
+    private float mRenderDownScaleFactor = mDownScaleFactor;
+    private int mRenderBlurRadius = mBlurRadius;
+    private BlurEngine mRenderBlurEngine;
+
+    /**
+     * Lowers the quality when the blurs are too slow on this device, see {@link
+     * BlurQualityController}
+     */
+    private final BlurQualityController mQualityController;
+    /**
+     * Time in nanoseconds to capture the last snapshot, on the main and the blur threads
+     */
+    private long mLastCaptureTime;
+
+    /**
+     * How the screen is captured into the snapshot, see {@link CaptureStrategy}
+     */
+    private CaptureStrategy mCaptureStrategy = PickerUIBlur
+            .getCaptureStrategy(PickerUIBlur.DEFAULT_CAPTURE_STRATEGY);
+    /**
+     * Capture being finished on the blur thread, null if there is none. Main thread only.
+     */
+    private PendingCapture mPendingCapture;
+    /**
+     * Region of the view captured by the last snapshot
+     */
+    private final Rect mCaptureRegion = new Rect();
+
+    private final SnapshotListener mRenderSnapshotListener = new SnapshotListener() {
+        @Override
+        public void onSnapshot(Bitmap snapshot) {
+            render(snapshot);
+        }
+    };
+
+    private final SnapshotListener mPrepareSnapshotListener = new SnapshotListener() {
+        @Override
+        public void onSnapshot(Bitmap snapshot) {
+            prepare(snapshot);
+        }
+    };
+
     private ViewGroup mRootView;
     private Context mContext;
     private int mFilterColor = -1;
     private int mAlpha = PickerUIBlur.CONSTANT_DEFAULT_ALPHA;
+
+    /**
+     * Filter color and alpha, applied by the blur engines with their last pass.
+     */
+    private BlurTint mBlurTint;
+
+    /**
+     * Config of the snapshot and of the blurred background, RGB_565 to halve their memory.
+     */
+    private Bitmap.Config mBitmapConfig = PickerUIBlur.DEFAULT_USE_BLUR_RGB_565
+            ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
     private boolean mUseBlur = PickerUIBlur.DEFAULT_USE_BLUR;
-    private boolean mUseRenderScript = PickerUIBlur.DEFAULT_USE_BLUR_RENDERSCRIPT;
+    private BlurEngine mBlurEngine = PickerUIBlur.getBlurEngine(PickerUIBlur.DEFAULT_BLUR_ENGINE);
     private BlurFinishedListener mBlurFinishedListener;
 
     /**
-     * Default constructor
+     * Scratch buffers for the blur kernel, kept between renders so that blurring a snapshot of the
+     * same size doesn't allocate again.
      */
-    public PickerUIBlurHelper(Context context, AttributeSet attrs) {
-        mContext = context;
-        getAttributes(attrs);
-        createImageViewBlur();
-    }
+    private final BlurWorkspace mBlurWorkspace = new BlurWorkspace();
 
     /**
-     * Generate a bitmap from a particular view.
-     *
-     * @param view the view to convert to a Bitmap
-     * @return the bitmap of the view
+     * Bitmaps of the snapshot and the blurred background, returned when the panel is hidden and
+     * reused by the next render.
+     */
+    private final BitmapPool mBitmapPool = new BitmapPool(PickerUIBlur.DEFAULT_BITMAP_POOL_SIZE);
+
+    /**
+     * Blurred backgrounds of the last snapshots, served again when the screen didn't change.
      */
-    static Bitmap loadBitmapFromView(View view) {
-        if (view != null && view.getWidth() > 0 && view.getHeight() > 0) {
-            Bitmap b = Bitmap.createBitmap(view.getWidth(), view.getHeight(), Bitmap.Config.ARGB_8888);
-            Canvas c = new Canvas(b);
-            view.draw(c);
+    private final BlurResultCache mBlurResultCache =
+            new BlurResultCache(PickerUIBlur.DEFAULT_BLUR_CACHE_SIZE, mBitmapPool);
 
-            return b;
+    /**
+     * Runs the blurs off the main thread, keeping only the newest render.
+     */
+    private final PickerUIBlurScheduler mBlurScheduler =
+            new PickerUIBlurScheduler(mBlurWorkspace, mBitmapPool);
+
+    /**
+     * Live blur, the background is captured and blurred again while it's shown.
+     */
+    private boolean mLiveBlur = PickerUIBlur.DEFAULT_LIVE_BLUR;
+    private int mLiveBlurMaxFps = PickerUIBlur.DEFAULT_LIVE_BLUR_MAX_FPS;
+    private boolean mLiveBlurRunning;
+    private final Handler mLiveBlurHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * View hidden while capturing the live background, the panel of the picker.
+     */
+    private View mSnapshotExcludedView;
+
+    /**
+     * Blur only the region behind the panel, the screen above gets a plain scrim
+     */
+    private boolean mBlurPanelOnly = PickerUIBlur.DEFAULT_BLUR_PANEL_ONLY;
+    private final Paint mScrimPaint = new Paint();
+    /**
+     * Region of the screen captured by the last snapshot, empty for the whole screen. It starts
+     * above the panel by the distance the blur reaches, so the top of the panel is blurred with
+     * the content above it.
+     */
+    private final Rect mSnapshotRegion = new Rect();
+    private int mSnapshotPanelTop;
+    private int mSnapshotHeight;
+    /**
+     * Top of the panel in the background shown, everything above is covered by the scrim. 0 when
+     * the whole screen is blurred.
+     */
+    private int mShownPanelTop;
+    private final int[] mLocation = new int[2];
+
+    /**
+     * Timings of the openings of the panel, may be null
+     */
+    private PickerUIMetrics mMetrics;
+    /**
+     * When the last bitmap was handed to the blurred ImageView, 0 once it was drawn
+     */
+    private long mUploadStart;
+
+    private final Runnable mLiveBlurFrame = new Runnable() {
+        @Override
+        public void run() {
+            renderLiveFrame();
         }
-        return null;
-    }
+    };
+
+    private final SnapshotListener mLiveSnapshotListener = new SnapshotListener() {
+        @Override
+        public void onSnapshot(Bitmap snapshot) {
+            if (!mLiveBlurRunning) {
+                mBitmapPool.put(snapshot);
+            } else if (snapshot != null) {
+                mBlurScheduler.schedule(mContext, snapshot, mRenderBlurRadius, mRenderBlurEngine,
+                        mBlurTint, mLiveBlurListener);
+            }
+        }
+    };
 
+    private final BlurFinishedListener mLiveBlurListener = new BlurFinishedListener() {
+        @Override
+        public void onBlurFinished(Bitmap bitmapWithBlur) {
+            if (!mLiveBlurRunning || bitmapWithBlur == null) {
+                mBitmapPool.put(bitmapWithBlur);
+                return;
+            }
+            // The new frame is shown and the old one goes back to the pool, where the next
+            // capture takes it from: two bitmaps take turns without the blur thread ever
+            // touching the one on screen
+            Drawable previous = mBlurredImageView.getDrawable();
+            setBackground(bitmapWithBlur);
+            recycleDrawable(previous);
+        }
+    };
 
     /**
-     * Downscale bitmap from view to reduce blurring time and memory allocation, using the downscale
-     * factor.
-     *
-     * @param bitmap The Bitmap to downscale
-     * @return the bitmap downscaled
+     * Progressive blur, a coarse background is shown at once and the real blur fades in later.
+     */
+    private boolean mProgressiveBlur = PickerUIBlur.DEFAULT_PROGRESSIVE_BLUR;
+    private final Paint mCoarsePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect mCoarseRect = new Rect();
+    /**
+     * Pixels of the coarse background while it's tinted, kept between opens. Main thread only,
+     * the blur thread may be using the workspace meanwhile.
+     */
+    private final BlurBuffers mCoarseBuffers = new BlurBuffers();
+
+    private final BlurFinishedListener mRefineListener = new BlurFinishedListener() {
+        @Override
+        public void onBlurFinished(Bitmap bitmapWithBlur) {
+            if (bitmapWithBlur == null || mBlurredImageView.getVisibility() != View.VISIBLE) {
+                // The panel was hidden before the blur finished
+                mBitmapPool.put(bitmapWithBlur);
+                return;
+            }
+            crossFade(bitmapWithBlur);
+        }
+    };
+
+    /**
+     * Blur started by {@link PickerUIBlurHelper#prepare()} and not delivered yet.
+     */
+    private PreparedBlurListener mPreparedBlur;
+    private boolean mPrepareOnIdle = PickerUIBlur.DEFAULT_PREPARE_ON_IDLE;
+    private boolean mPrepareIdleScheduled;
+
+    private final MessageQueue.IdleHandler mPrepareIdleHandler = new MessageQueue.IdleHandler() {
+        @Override
+        public boolean queueIdle() {
+            mPrepareIdleScheduled = false;
+            prepare();
+            return false;
+        }
+    };
+
+    /**
+     * Frees the blur buffers when the system is running low on memory.
+     */
+    private final ComponentCallbacks2 mMemoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                mBlurWorkspace.trim();
+                mCoarseBuffers.trim();
+                mBitmapPool.clear();
+                mBlurResultCache.clear();
+                DivisionTables.clear();
+                RenderScriptBlurEngine.trimMemory();
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            mBlurWorkspace.trim();
+            mCoarseBuffers.trim();
+            mBitmapPool.clear();
+            mBlurResultCache.clear();
+            DivisionTables.clear();
+            RenderScriptBlurEngine.trimMemory();
+        }
+    };
+
+    /**
+     * Default constructor
      */
-    static Bitmap downscaleBitmap(Bitmap bitmap) {
-        int width = (int) (bitmap.getWidth() / mDownScaleFactor);
-        int height = (int) (bitmap.getHeight() / mDownScaleFactor);
-        return Bitmap.createScaledBitmap(bitmap, width, height, false);
+    public PickerUIBlurHelper(Context context, AttributeSet attrs) {
+        mContext = context;
+        mQualityController = new BlurQualityController(context);
+        mScrimPaint.setColor(PickerUIBlur.DEFAULT_BLUR_SCRIM_COLOR);
+        getAttributes(attrs);
+        createImageViewBlur();
+        updateBlurTint();
     }
 
     /**
@@ -119,8 +334,25 @@ public class PickerUIBlurHelper {
                 mDownScaleFactor = typedArray.getFloat(R.styleable.PickerUI_blur_downScaleFactor,
                         PickerUIBlur.DEFAULT_DOWNSCALE_FACTOR);
                 mFilterColor = typedArray.getColor(R.styleable.PickerUI_blur_FilterColor, -1);
-                mUseRenderScript = typedArray.getBoolean(R.styleable.PickerUI_blur_use_renderscript,
-                        PickerUIBlur.DEFAULT_USE_BLUR_RENDERSCRIPT);
+                boolean useRenderScript = typedArray
+                        .getBoolean(R.styleable.PickerUI_blur_use_renderscript,
+                                PickerUIBlur.DEFAULT_USE_BLUR_RENDERSCRIPT);
+                int engine = typedArray.getInt(R.styleable.PickerUI_blur_engine,
+                        useRenderScript ? PickerUIBlur.ENGINE_RENDERSCRIPT
+                                : PickerUIBlur.DEFAULT_BLUR_ENGINE);
+                mBlurEngine = PickerUIBlur.getBlurEngine(engine);
+                mBitmapConfig = typedArray.getBoolean(R.styleable.PickerUI_blur_rgb565,
+                        PickerUIBlur.DEFAULT_USE_BLUR_RGB_565) ? Bitmap.Config.RGB_565
+                        : Bitmap.Config.ARGB_8888;
+                mAutoQuality = typedArray.getBoolean(R.styleable.PickerUI_blur_auto_quality,
+                        PickerUIBlur.DEFAULT_AUTO_BLUR_QUALITY);
+                mBlurPanelOnly = typedArray.getBoolean(R.styleable.PickerUI_blur_panel_only,
+                        PickerUIBlur.DEFAULT_BLUR_PANEL_ONLY);
+                mScrimPaint.setColor(typedArray.getColor(R.styleable.PickerUI_blur_scrim_color,
+                        PickerUIBlur.DEFAULT_BLUR_SCRIM_COLOR));
+                mCaptureStrategy = PickerUIBlur.getCaptureStrategy(
+                        typedArray.getInt(R.styleable.PickerUI_blur_capture,
+                                PickerUIBlur.DEFAULT_CAPTURE_STRATEGY));
 
             } catch (Exception e) {
                 Log.e(LOG_TAG, "Error while creating the view PickerUI with PickerUIBlurHelper: ",
@@ -146,6 +378,109 @@ public class PickerUIBlurHelper {
                 : downScaleFactor;
     }
 
+    /**
+     * Method to pick the down scale factor and the radius of each render from the size of the
+     * screen and the memory of the device, keeping the blur about {@link
+     * PickerUIBlur#DEFAULT_AUTO_BLUR_EXTENT_DP} wide. The configured factor and radius are
+     * ignored meanwhile.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_AUTO_BLUR_QUALITY}
+     *
+     * @param autoQuality 'true' to pick them for each render
+     */
+    public void setAutoQuality(boolean autoQuality) {
+        mAutoQuality = autoQuality;
+    }
+
+    /**
+     * Method to lower the quality on later opens while the blurs measured on this device are
+     * slower than a target: the snapshot is downscaled more, with a smaller radius, and the box
+     * and gaussian engines are replaced by the parallel stack blur. It is raised back when the
+     * blurs are well under the target. See {@link BlurQualityController}.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_BLUR_TARGET_LATENCY}
+     *
+     * @param millis capture and blur time aimed at in milliseconds, 0 to keep the quality
+     */
+    public void setTargetLatency(int millis) {
+        mQualityController.setTargetLatency(millis);
+    }
+
+    /**
+     * Method to keep the quality reached for the target latency in the SharedPreferences, so the
+     * next start of the app doesn't measure again from the highest quality.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_PERSIST_BLUR_QUALITY}
+     *
+     * @param persist 'true' to keep it
+     */
+    public void setPersistQuality(boolean persist) {
+        mQualityController.setPersist(persist);
+    }
+
+    /**
+     * Maximum memory of the buffers of one render with the automatic quality. It is cut down on
+     * devices with a small heap or low RAM, and when the free heap is short.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_BLUR_MEMORY_BUDGET}
+     *
+     * @param maxBytes maximum bytes, must be positive
+     */
+    public void setMemoryBudget(int maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Invalid blur memory budget");
+        }
+        mMemoryBudget = maxBytes;
+    }
+
+    /**
+     * Priority of the thread that blurs the background
+     *
+     * By default the priority is {@link PickerUIBlur#DEFAULT_BLUR_THREAD_PRIORITY}
+     *
+     * @param priority a priority of {@link android.os.Process}, from THREAD_PRIORITY_URGENT_DISPLAY
+     *                 to THREAD_PRIORITY_LOWEST
+     */
+    public void setBlurThreadPriority(int priority) {
+        mBlurScheduler.setThreadPriority(priority);
+    }
+
+    /**
+     * Number of blurred backgrounds kept to open the picker again on a screen that didn't change
+     * without blurring.
+     *
+     * By default the size is {@link PickerUIBlur#DEFAULT_BLUR_CACHE_SIZE}
+     *
+     * @param maxEntries maximum number of backgrounds, 0 to disable the cache
+     */
+    public void setBlurCacheSize(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Invalid blur cache size");
+        }
+        mBlurResultCache.setMaxEntries(maxEntries);
+    }
+
+    /**
+     * @return the cache of blurred backgrounds, to read its hit and miss counters
+     */
+    public BlurResultCache getBlurResultCache() {
+        return mBlurResultCache;
+    }
+
+    /**
+     * Maximum memory kept to reuse the bitmaps of the snapshot and the blurred background
+     *
+     * By default the size is {@link PickerUIBlur#DEFAULT_BITMAP_POOL_SIZE}
+     *
+     * @param maxBytes maximum size in bytes, 0 to recycle the bitmaps on every hide
+     */
+    public void setBlurBitmapPoolSize(int maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Invalid bitmap pool size");
+        }
+        mBitmapPool.setMaxSize(maxBytes);
+    }
+
     /**
      * Method to set the use of blur effect
      *
@@ -156,12 +491,72 @@ public class PickerUIBlurHelper {
     }
 
     /**
-     * Method to set the use of renderScript algorithm
+     * Method to set the use of renderScript algorithm. It's the same as selecting {@link
+     * PickerUIBlur#ENGINE_RENDERSCRIPT} or {@link PickerUIBlur#ENGINE_PARALLEL_STACK} as engine.
      *
      * @param useRenderScript if want to use renderScript algorithm
      */
     public void setUseRenderScript(boolean useRenderScript) {
-        mUseRenderScript = useRenderScript;
+        setBlurEngine(useRenderScript ? PickerUIBlur.ENGINE_RENDERSCRIPT
+                : PickerUIBlur.ENGINE_PARALLEL_STACK);
+    }
+
+    /**
+     * Select the engine used to blur the background
+     *
+     * By default the engine is {@link PickerUIBlur#DEFAULT_BLUR_ENGINE}
+     *
+     * @param engine One of {@link PickerUIBlur#ENGINE_STACK}, {@link PickerUIBlur#ENGINE_BOX},
+     *               {@link PickerUIBlur#ENGINE_GAUSSIAN}, {@link
+     *               PickerUIBlur#ENGINE_RENDERSCRIPT}, {@link
+     *               PickerUIBlur#ENGINE_PARALLEL_STACK} or {@link
+     *               PickerUIBlur#ENGINE_DUAL_KAWASE}
+     */
+    public void setBlurEngine(int engine) {
+        if (!PickerUIBlur.isValidBlurEngine(engine)) {
+            throw new IllegalArgumentException("Invalid blur engine");
+        }
+        mBlurEngine = PickerUIBlur.getBlurEngine(engine);
+    }
+
+    /**
+     * Use a custom engine to blur the background
+     *
+     * @param engine The engine that blurs the pixels of the snapshot
+     */
+    public void setBlurEngine(BlurEngine engine) {
+        if (engine == null) {
+            throw new IllegalArgumentException("Invalid blur engine");
+        }
+        mBlurEngine = engine;
+    }
+
+    /**
+     * Select how the screen is captured before blurring it. The deferred strategies only start
+     * the capture on the main thread and finish it on the blur thread.
+     *
+     * By default the strategy is {@link PickerUIBlur#DEFAULT_CAPTURE_STRATEGY}
+     *
+     * @param strategy One of {@link PickerUIBlur#CAPTURE_DRAW}, {@link
+     *                 PickerUIBlur#CAPTURE_PICTURE} or {@link PickerUIBlur#CAPTURE_PIXEL_COPY}
+     */
+    public void setCaptureStrategy(int strategy) {
+        if (!PickerUIBlur.isValidCaptureStrategy(strategy)) {
+            throw new IllegalArgumentException("Invalid capture strategy");
+        }
+        mCaptureStrategy = PickerUIBlur.getCaptureStrategy(strategy);
+    }
+
+    /**
+     * Use a custom strategy to capture the screen
+     *
+     * @param strategy The strategy that captures the screen into the snapshot
+     */
+    public void setCaptureStrategy(CaptureStrategy strategy) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("Invalid capture strategy");
+        }
+        mCaptureStrategy = strategy;
     }
 
     /**
@@ -169,10 +564,13 @@ public class PickerUIBlurHelper {
      *
      * By default blur radius is set to {@link PickerUIBlur#MIN_BLUR_RADIUS}
      *
+     * Values above {@link PickerUIBlur#MAX_BLUR_RADIUS} are only reached with {@link
+     * PickerUIBlur#ENGINE_DUAL_KAWASE}, the other engines blur with the maximum radius.
+     *
      * @param blurRadius The radius to blur the image, radius must be at least 1
      */
     public void setBlurRadius(int blurRadius) {
-        if (!PickerUIBlur.isValidBlurRadius(blurRadius)) {
+        if (!PickerUIBlur.isValidBlurRadius(PickerUIBlur.ENGINE_DUAL_KAWASE, blurRadius)) {
             throw new IllegalArgumentException("Invalid blur radius");
         }
         mBlurRadius = blurRadius < PickerUIBlur.MIN_BLUR_RADIUS ? PickerUIBlur.MIN_BLUR_RADIUS
@@ -197,44 +595,113 @@ public class PickerUIBlurHelper {
      */
     public void setFilterColor(int filterColor) {
         this.mFilterColor = filterColor;
+        updateBlurTint();
     }
 
     /**
-     * This method puts a layer over the image if you choose to put a color filter.
+     * Select the alpha of the blurred background
+     *
+     * By default is {@link PickerUIBlur#CONSTANT_DEFAULT_ALPHA}
      *
-     * @param sourceBitmap the bitmap downscaled and blurred.
-     * @param image        the ImageView at which to place the downscaled and blurred image
-     * @param color        the filter color to apply over the image
+     * @param alpha from 0, transparent, to 255, opaque
      */
-    private void changeBitmapColor(Bitmap sourceBitmap, ImageView image, int color) {
+    public void setBlurAlpha(int alpha) {
+        if (alpha < 0 || alpha > 255) {
+            throw new IllegalArgumentException("Invalid blur alpha");
+        }
+        this.mAlpha = alpha;
+        updateBlurTint();
+    }
 
-        Bitmap resultBitmap = Bitmap
-                .createBitmap(sourceBitmap, 0, 0, sourceBitmap.getWidth() - 1,
-                        sourceBitmap.getHeight() - 1);
-        Paint p = new Paint();
-        ColorFilter filter = new PorterDuffColorFilter(color, PorterDuff.Mode.OVERLAY);
-        p.setColorFilter(filter);
-        image.setImageBitmap(resultBitmap);
+    /**
+     * Blur in 16 bits per pixel. The snapshot, the blur and the background shown use half the
+     * memory of ARGB_8888, for devices short of memory. The stack blur engines have a kernel for
+     * it, see {@link com.dpizarro.uipicker.blur.StackBlur#blur565}; the others blur through 32
+     * bits pixels as usual. Colors are less precise, up to two 5 bit steps, and the snapshot is
+     * no longer blurred incrementally.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_USE_BLUR_RGB_565}
+     *
+     * @param useRgb565 'true' to use RGB_565 bitmaps
+     */
+    public void setUseRgb565(boolean useRgb565) {
+        mBitmapConfig = useRgb565 ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        updateBlurTint();
+    }
 
-        Canvas canvas = new Canvas(resultBitmap);
-        canvas.drawBitmap(resultBitmap, 0, 0, p);
+    /**
+     * Rebuilds the tint written by the blur. RGB_565 has no alpha channel, so in that case the
+     * alpha is applied by the ImageView instead.
+     */
+    private void updateBlurTint() {
+        boolean opaque = mBitmapConfig == Bitmap.Config.RGB_565;
+        mBlurTint = BlurTint.create(mFilterColor, opaque ? 255 : mAlpha);
+        if (mBlurredImageView != null) {
+            setAlpha(mBlurredImageView, opaque ? mAlpha / 255f : 1f, 0);
+        }
     }
 
     /**
-     * This method set the downscaled and blurred image in the fake ImageView, and with a filter
-     * over the image if it's
-     * necessary.
+     * This method set the downscaled and blurred image in the fake ImageView. The color filter and
+     * the alpha are already applied by the blur, see {@link BlurTint}.
      *
      * @param blurBitmap the bitmap downscaled and blurred.
      */
     void setBackground(Bitmap blurBitmap) {
-        BitmapDrawable bd = new BitmapDrawable(mContext.getResources(), blurBitmap);
-        bd.setAlpha(mAlpha);
-        if (mFilterColor != -1) {
-            changeBitmapColor(bd.getBitmap(), mBlurredImageView, mFilterColor);
+        if (mMetrics != null) {
+            mMetrics.expect(PickerUIMetrics.PHASE_UPLOAD);
+            mUploadStart = System.nanoTime();
+        }
+        // A region is stretched over the same region of the screen, between the paddings
+        if (mSnapshotRegion.isEmpty()) {
+            mBlurredImageView.setPadding(0, 0, 0, 0);
+            mShownPanelTop = 0;
         } else {
-            mBlurredImageView.setImageBitmap(blurBitmap);
+            mBlurredImageView.setPadding(mSnapshotRegion.left, mSnapshotRegion.top, 0,
+                    mSnapshotHeight - mSnapshotRegion.bottom);
+            mShownPanelTop = mSnapshotPanelTop;
         }
+        mBlurredImageView.setImageBitmap(blurBitmap);
+    }
+
+    /**
+     * Method to capture and blur only the region behind the panel, plus the distance the blur
+     * reaches above it; the rest of the screen is covered by a plain scrim. Capture and blur
+     * process as many less pixels as the panel is smaller than the screen.
+     *
+     * The panel is the view set with {@link PickerUIBlurHelper#setSnapshotExcludedView(View)},
+     * at the bottom of its parent.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_BLUR_PANEL_ONLY}
+     *
+     * @param panelOnly 'true' to blur only behind the panel
+     */
+    public void setBlurPanelOnly(boolean panelOnly) {
+        mBlurPanelOnly = panelOnly;
+    }
+
+    /**
+     * Select the color of the scrim over the screen above the panel, see {@link
+     * PickerUIBlurHelper#setBlurPanelOnly(boolean)}
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_BLUR_SCRIM_COLOR}
+     *
+     * @param color ARGB color, usually translucent
+     */
+    public void setBlurScrimColor(int color) {
+        mScrimPaint.setColor(color);
+        if (mBlurredImageView != null) {
+            mBlurredImageView.invalidate();
+        }
+    }
+
+    /**
+     * Set where the timings of the openings of the panel are recorded.
+     *
+     * @param metrics the metrics of the picker, null to stop recording
+     */
+    public void setMetrics(PickerUIMetrics metrics) {
+        mMetrics = metrics;
     }
 
     /**
@@ -249,30 +716,64 @@ public class PickerUIBlurHelper {
 
             // Set the blurred background
             setBackground(bitmapWithBlur);
+            startLiveBlur();
         }
     }
 
     /**
-     * This method hides the fake ImageView, the blurred image is recycled and the background of the fake ImageView is
-     * cleared.
+     * This method hides the fake ImageView, the blurred image is returned to the pool and the background of the fake
+     * ImageView is cleared. The blur buffers are handed back and only kept while there is no memory pressure.
      */
     public void handleRecycle() {
         if (mUseBlur) {
+            stopLiveBlur();
             Drawable drawable = mBlurredImageView.getDrawable();
-
-            if (drawable instanceof BitmapDrawable) {
-                BitmapDrawable bitmapDrawable = ((BitmapDrawable) drawable);
-                Bitmap bitmap = bitmapDrawable.getBitmap();
-
-                if (bitmap != null) {
-                    bitmap.recycle();
-                }
-            }
             mBlurredImageView.setVisibility(View.GONE);
             mBlurredImageView.setImageBitmap(null);
+
+            recycleDrawable(drawable);
+            mBlurWorkspace.release();
+            mCoarseBuffers.release();
+            schedulePrepareOnIdle();
         }
     }
 
+    /**
+     * Starts listening for memory pressure to free the blur buffers and keeps the RenderScript
+     * context alive. Must be called when the picker is attached to the window.
+     */
+    public void onAttachedToWindow() {
+        RenderScriptBlurEngine.retain();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            mContext.registerComponentCallbacks(mMemoryCallbacks);
+        }
+        schedulePrepareOnIdle();
+    }
+
+    /**
+     * Stops listening for memory pressure and frees the blur buffers. The RenderScript objects are
+     * destroyed if this was the last picker attached. Must be called when the picker is detached
+     * from the window.
+     */
+    public void onDetachedFromWindow() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            mContext.unregisterComponentCallbacks(mMemoryCallbacks);
+        }
+        if (mPrepareIdleScheduled) {
+            Looper.myQueue().removeIdleHandler(mPrepareIdleHandler);
+            mPrepareIdleScheduled = false;
+        }
+        mPreparedBlur = null;
+        mPendingCapture = null;
+        stopLiveBlur();
+        mBlurScheduler.quit();
+        mBlurWorkspace.trim();
+        mCoarseBuffers.trim();
+        mBitmapPool.clear();
+        mBlurResultCache.clear();
+        RenderScriptBlurEngine.release();
+    }
+
     /**
      * Create a ImageView with width and height MATCH_PARENT, which will host the blurred snapshot.
      */
@@ -282,14 +783,31 @@ public class PickerUIBlurHelper {
             mRootView = (ViewGroup) ((Activity) mContext).getWindow().getDecorView()
                     .findViewById(android.R.id.content);
 
-            mBlurredImageView = new ImageView(mContext);
+            mBlurredImageView = new ImageView(mContext) {
+                @Override
+                protected void onDraw(Canvas canvas) {
+                    if (mShownPanelTop > 0) {
+                        // Above the panel, the scrim also hides the margin of the region
+                        canvas.drawRect(0, 0, getWidth(), mShownPanelTop, mScrimPaint);
+                        int count = canvas.save();
+                        canvas.clipRect(0, mShownPanelTop, getWidth(), getHeight());
+                        super.onDraw(canvas);
+                        canvas.restoreToCount(count);
+                    } else {
+                        super.onDraw(canvas);
+                    }
+                    if (mUploadStart != 0 && mMetrics != null) {
+                        mMetrics.record(PickerUIMetrics.PHASE_UPLOAD,
+                                System.nanoTime() - mUploadStart);
+                    }
+                    mUploadStart = 0;
+                }
+            };
 
             RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(
                     ViewGroup.LayoutParams.MATCH_PARENT,
                     ViewGroup.LayoutParams.MATCH_PARENT);
 
-            Log.d("YYYYY width", "" + mRootView.getWidth());
-            Log.d("YYYYY height", "" + mRootView.getHeight());
             mBlurredImageView.setLayoutParams(params);
             mBlurredImageView.setClickable(false);
             mBlurredImageView.setVisibility(View.GONE);
@@ -308,23 +826,452 @@ public class PickerUIBlurHelper {
 
     /**
      * This method first checks if it is necessary to perform the Blur task.
-     * If it's necesarry, launch the BlurTask. If it's necessary, it notifies to show the panel.
+     * If it's necesarry, snapshots the layout and hands it to the blur scheduler, which replaces
+     * any render still in progress. If it's not necessary, it notifies to show the panel.
      */
     public void render() {
+        if (mBlurFinishedListener == null) {
+            throw new IllegalStateException(
+                    "You must assign a valid BlurFinishedListener first!");
+        }
         if (mUseBlur) {
-            PickerUIBlurTask pickerUIBlurTask = new PickerUIBlurTask((Activity) mContext,
-                    mBlurRadius,
-                    mBlurFinishedListener, mUseRenderScript);
-            pickerUIBlurTask.execute();
+            takeSnapshot(mCaptureStrategy, mRenderSnapshotListener);
         } else {
-            if (mBlurFinishedListener == null) {
-                throw new IllegalStateException(
-                        "You must assign a valid BlurFinishedListener first!");
+            mBlurFinishedListener.onBlurFinished(null);
+        }
+    }
+
+    private void render(Bitmap snapshot) {
+        if (mUseBlur) {
+            final BlurResultCache.Key key = snapshot != null ? mBlurResultCache
+                    .createKey(snapshot, mRenderBlurRadius, mRenderDownScaleFactor, mFilterColor,
+                            mAlpha, mRenderBlurEngine)
+                    : null;
+            Bitmap cached = mBlurResultCache.get(key);
+            if (cached != null) {
+                // Same screen as a previous render, the older renders are not wanted anymore
+                mPreparedBlur = null;
+                mBlurScheduler.cancel();
+                mBitmapPool.put(snapshot);
+                if (mMetrics != null) {
+                    mMetrics.record(PickerUIMetrics.PHASE_BLUR, 0);
+                }
+                mBlurFinishedListener.onBlurFinished(cached);
+                return;
             }
+
+            if (mMetrics != null) {
+                mMetrics.expect(PickerUIMetrics.PHASE_BLUR);
+            }
+            BlurFinishedListener target = mBlurFinishedListener;
+            if (mProgressiveBlur && snapshot != null) {
+                // The panel slides up over the coarse background, the blur fades in when ready
+                mBlurFinishedListener.onBlurFinished(createCoarseBlur(snapshot));
+                target = mRefineListener;
+            }
+
+            if (mPreparedBlur != null && key != null && key.equals(mPreparedBlur.mKey)) {
+                // The screen didn't change since prepare(), its blur is already running
+                mPreparedBlur.mTarget = target;
+                mBitmapPool.put(snapshot);
+                return;
+            }
+            mPreparedBlur = null;
+
+            final BlurFinishedListener listener = target;
+            mBlurScheduler.schedule(mContext, snapshot, mRenderBlurRadius, mRenderBlurEngine,
+                    mBlurTint, new BlurFinishedListener() {
+                        @Override
+                        public void onBlurFinished(Bitmap bitmapWithBlur) {
+                            recordBlurTime();
+                            mBlurResultCache.put(key, bitmapWithBlur);
+                            listener.onBlurFinished(bitmapWithBlur);
+                        }
+                    });
+        } else {
+            // The blur was turned off while capturing
+            mBitmapPool.put(snapshot);
             mBlurFinishedListener.onBlurFinished(null);
         }
     }
 
+    /**
+     * Blurs the current screen ahead of {@link PickerUIBlurHelper#render()}, so the panel can be
+     * shown without waiting when it is opened. The result is kept in the {@link BlurResultCache}
+     * and only used if the screen is still the same; without cache, the next render only blurs
+     * again what changed (see {@link IncrementalBlur}). Does nothing while a render is running or
+     * the blurred background is shown.
+     */
+    public void prepare() {
+        if (!mUseBlur || mBlurScheduler.isRendering() || mPendingCapture != null
+                || mBlurredImageView.getVisibility() == View.VISIBLE) {
+            return;
+        }
+        takeSnapshot(mCaptureStrategy, mPrepareSnapshotListener);
+    }
+
+    private void prepare(Bitmap snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+        BlurResultCache.Key key = mBlurResultCache
+                .createKey(snapshot, mRenderBlurRadius, mRenderDownScaleFactor, mFilterColor,
+                        mAlpha, mRenderBlurEngine);
+        if (mBlurResultCache.contains(key)) {
+            mBitmapPool.put(snapshot);
+            return;
+        }
+        mPreparedBlur = new PreparedBlurListener(key);
+        mBlurScheduler.schedule(mContext, snapshot, mRenderBlurRadius, mRenderBlurEngine,
+                mBlurTint, mPreparedBlur);
+    }
+
+    /**
+     * Calls {@link PickerUIBlurHelper#prepare()} the next time the main thread is idle, after
+     * the picker is attached and every time the panel is hidden.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_PREPARE_ON_IDLE}
+     *
+     * @param prepareOnIdle 'true' to blur the screen when the main thread is idle
+     */
+    public void setPrepareOnIdle(boolean prepareOnIdle) {
+        mPrepareOnIdle = prepareOnIdle;
+        if (prepareOnIdle) {
+            schedulePrepareOnIdle();
+        } else if (mPrepareIdleScheduled) {
+            Looper.myQueue().removeIdleHandler(mPrepareIdleHandler);
+            mPrepareIdleScheduled = false;
+        }
+    }
+
+    private void schedulePrepareOnIdle() {
+        if (mPrepareOnIdle && mUseBlur && !mPrepareIdleScheduled) {
+            Looper.myQueue().addIdleHandler(mPrepareIdleHandler);
+            mPrepareIdleScheduled = true;
+        }
+    }
+
+    /**
+     * Method to keep blurring the background while the panel is shown, so animations and changes
+     * behind the picker are seen. Every frame captures and blurs the screen again on the blur
+     * thread; a frame is skipped if the previous one is still blurring, the main thread never
+     * waits for it.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_LIVE_BLUR}
+     *
+     * @param liveBlur 'true' to update the background while it's shown
+     */
+    public void setLiveBlur(boolean liveBlur) {
+        mLiveBlur = liveBlur;
+        if (!liveBlur) {
+            stopLiveBlur();
+        } else if (mUseBlur && mBlurredImageView.getVisibility() == View.VISIBLE) {
+            startLiveBlur();
+        }
+    }
+
+    /**
+     * Method to set the maximum number of times per second the live background is updated, see
+     * {@link PickerUIBlurHelper#setLiveBlur(boolean)}
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_LIVE_BLUR_MAX_FPS}
+     *
+     * @param maxFps updates per second, between 1 and 60
+     */
+    public void setLiveBlurMaxFps(int maxFps) {
+        if (maxFps < 1 || maxFps > 60) {
+            throw new IllegalArgumentException("Invalid live blur frames per second");
+        }
+        mLiveBlurMaxFps = maxFps;
+    }
+
+    /**
+     * Sets a view that must not appear in the live background, usually the panel over it. It is
+     * also the panel behind which the blur is limited, see {@link
+     * PickerUIBlurHelper#setBlurPanelOnly(boolean)}.
+     *
+     * @param view the view hidden while capturing, may be null
+     */
+    public void setSnapshotExcludedView(View view) {
+        mSnapshotExcludedView = view;
+    }
+
+    private void startLiveBlur() {
+        if (mLiveBlur && !mLiveBlurRunning) {
+            mLiveBlurRunning = true;
+            mLiveBlurHandler.postDelayed(mLiveBlurFrame, 1000 / mLiveBlurMaxFps);
+        }
+    }
+
+    private void stopLiveBlur() {
+        if (mLiveBlurRunning) {
+            mLiveBlurRunning = false;
+            mLiveBlurHandler.removeCallbacks(mLiveBlurFrame);
+        }
+    }
+
+    private void renderLiveFrame() {
+        if (!mLiveBlurRunning) {
+            return;
+        }
+        mLiveBlurHandler.postDelayed(mLiveBlurFrame, 1000 / mLiveBlurMaxFps);
+        if (mBlurScheduler.isRendering() || mPendingCapture != null) {
+            // The previous frame is still capturing or blurring, skip this one
+            return;
+        }
+
+        // The blurred background and the panel must not be captured
+        int imageVisibility = mBlurredImageView.getVisibility();
+        mBlurredImageView.setVisibility(View.INVISIBLE);
+        int excludedVisibility = View.GONE;
+        if (mSnapshotExcludedView != null) {
+            excludedVisibility = mSnapshotExcludedView.getVisibility();
+            mSnapshotExcludedView.setVisibility(View.INVISIBLE);
+        }
+        try {
+            takeSnapshot(getLiveCaptureStrategy(), mLiveSnapshotListener);
+        } finally {
+            mBlurredImageView.setVisibility(imageVisibility);
+            if (mSnapshotExcludedView != null) {
+                mSnapshotExcludedView.setVisibility(excludedVisibility);
+            }
+        }
+    }
+
+    /**
+     * @return the strategy capturing the live frames. The window copied by {@link
+     * PixelCopyCaptureStrategy} still shows the blurred background and the panel, the frames are
+     * recorded by a {@link PictureCaptureStrategy} instead.
+     */
+    private CaptureStrategy getLiveCaptureStrategy() {
+        return mCaptureStrategy instanceof PixelCopyCaptureStrategy ? PickerUIBlur
+                .getCaptureStrategy(PickerUIBlur.CAPTURE_PICTURE) : mCaptureStrategy;
+    }
+
+    /**
+     * Method to show a coarse background at once and fade in the blurred one when it's ready, so
+     * the panel doesn't wait for the blur on slow devices.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_PROGRESSIVE_BLUR}
+     *
+     * @param progressiveBlur 'true' to show a coarse background first
+     */
+    public void setProgressiveBlur(boolean progressiveBlur) {
+        mProgressiveBlur = progressiveBlur;
+    }
+
+    /**
+     * Approximates the blur by halving the snapshot with bilinear filtering until a pixel covers
+     * about the radius; the ImageView scales it back up, bilinear too. Takes well under a
+     * millisecond on the main thread.
+     *
+     * @param snapshot the downscaled snapshot, not modified
+     * @return a bitmap from the pool, much smaller than the snapshot
+     */
+    private Bitmap createCoarseBlur(Bitmap snapshot) {
+        int factor = Math.max(2, Integer.highestOneBit(mRenderBlurRadius));
+        Bitmap current = snapshot;
+        for (int scale = 2; scale <= factor; scale *= 2) {
+            int width = Math.max(1, current.getWidth() / 2);
+            int height = Math.max(1, current.getHeight() / 2);
+            Bitmap next = mBitmapPool.get(width, height, snapshot.getConfig());
+            mCoarseRect.set(0, 0, width, height);
+            new Canvas(next).drawBitmap(current, null, mCoarseRect, mCoarsePaint);
+            if (current != snapshot) {
+                mBitmapPool.put(current);
+            }
+            current = next;
+        }
+
+        if (mBlurTint != null) {
+            long start = System.nanoTime();
+            int width = current.getWidth();
+            int height = current.getHeight();
+            mCoarseBuffers.ensure(width, height);
+            try {
+                int[] pixels = mCoarseBuffers.getPixels();
+                current.getPixels(pixels, 0, width, 0, 0, width, height);
+                mBlurTint.apply(pixels, 0, width * height);
+                current.setPixels(pixels, 0, width, 0, 0, width, height);
+            } finally {
+                mCoarseBuffers.finish();
+            }
+            if (mMetrics != null) {
+                mMetrics.record(PickerUIMetrics.PHASE_TINT, System.nanoTime() - start);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Replaces the coarse background with the blurred one, fading between them.
+     */
+    private void crossFade(Bitmap bitmapWithBlur) {
+        Drawable coarse = mBlurredImageView.getDrawable();
+        setBackground(bitmapWithBlur);
+        if (coarse == null) {
+            return;
+        }
+
+        final TransitionDrawable transition = new TransitionDrawable(
+                new Drawable[]{coarse, mBlurredImageView.getDrawable()});
+        transition.setCrossFadeEnabled(true);
+        mBlurredImageView.setImageDrawable(transition);
+        transition.startTransition(PickerUIBlur.CROSS_FADE_DURATION);
+
+        mBlurredImageView.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                // Unless it was hidden or replaced meanwhile, keep only the blurred background
+                if (mBlurredImageView.getDrawable() == transition) {
+                    mBlurredImageView.setImageDrawable(transition.getDrawable(1));
+                    recycleDrawable(transition.getDrawable(0));
+                }
+            }
+        }, PickerUIBlur.CROSS_FADE_DURATION);
+    }
+
+    /**
+     * Returns the bitmaps of a drawable no longer shown to the pool.
+     */
+    private void recycleDrawable(Drawable drawable) {
+        if (drawable instanceof BitmapDrawable) {
+            mBitmapPool.put(((BitmapDrawable) drawable).getBitmap());
+        } else if (drawable instanceof LayerDrawable) {
+            LayerDrawable layers = (LayerDrawable) drawable;
+            for (int i = 0; i < layers.getNumberOfLayers(); i++) {
+                recycleDrawable(layers.getDrawable(i));
+            }
+        }
+    }
+
+    /**
+     * Captures the layout downscaled, replacing the capture in progress. The listener gets the
+     * snapshot at once, or from a later message of the main thread if the strategy finishes the
+     * capture on the blur thread; it gets null if the layout can't be captured yet.
+     */
+    private void takeSnapshot(CaptureStrategy strategy, SnapshotListener listener) {
+        mPendingCapture = null;
+        //The view that we take snapshot
+        View snapshotView = ((Activity) mContext).getWindow().getDecorView()
+                .findViewById(android.R.id.content);
+        updateRenderQuality(snapshotView);
+        updateSnapshotRegion(snapshotView);
+        if (snapshotView == null || snapshotView.getWidth() <= 0
+                || snapshotView.getHeight() <= 0) {
+            mLastCaptureTime = 0;
+            listener.onSnapshot(null);
+            return;
+        }
+        if (mSnapshotRegion.isEmpty()) {
+            mCaptureRegion.set(0, 0, snapshotView.getWidth(), snapshotView.getHeight());
+        } else {
+            mCaptureRegion.set(mSnapshotRegion);
+        }
+
+        long start = System.nanoTime();
+        int width = Math.max(1, (int) (mCaptureRegion.width() / mRenderDownScaleFactor));
+        int height = Math.max(1, (int) (mCaptureRegion.height() / mRenderDownScaleFactor));
+        Bitmap snapshot = mBitmapPool.get(width, height, mBitmapConfig);
+        CaptureStrategy.Capture capture;
+        PickerUITrace.begin(PickerUITrace.CAPTURE);
+        try {
+            capture = strategy.capture(snapshotView, mCaptureRegion, snapshot);
+        } finally {
+            PickerUITrace.end();
+        }
+        long end = System.nanoTime();
+        mLastCaptureTime = end - start;
+        if (mMetrics != null) {
+            mMetrics.record(PickerUIMetrics.PHASE_CAPTURE, mLastCaptureTime);
+        }
+
+        if (capture == null) {
+            listener.onSnapshot(snapshot);
+            return;
+        }
+        if (mMetrics != null) {
+            mMetrics.expect(PickerUIMetrics.PHASE_CAPTURE_FINISH);
+        }
+        mPendingCapture = new PendingCapture(listener);
+        mBlurScheduler.finishCapture(capture, snapshot, mPendingCapture);
+    }
+
+    /**
+     * Sets the down scale factor, the radius and the engine of the next snapshot: the configured
+     * ones or those picked by {@link BlurQuality} for the size of the view and the memory left,
+     * then lowered by the {@link BlurQualityController} if the blurs are too slow.
+     */
+    private void updateRenderQuality(View snapshotView) {
+        mRenderDownScaleFactor = mDownScaleFactor;
+        mRenderBlurEngine = mQualityController.getEngine(mBlurEngine);
+        mRenderBlurRadius = Math.min(mBlurRadius, Blur.maxRadius(mRenderBlurEngine));
+        if (mAutoQuality && snapshotView != null) {
+            float extentPx = PickerUIBlur.DEFAULT_AUTO_BLUR_EXTENT_DP
+                    * mContext.getResources().getDisplayMetrics().density;
+            long budget = BlurQuality.memoryBudget(mContext, mMemoryBudget);
+            mRenderDownScaleFactor = BlurQuality.downscale(snapshotView.getWidth(),
+                    snapshotView.getHeight(), extentPx, BlurQuality.bytesPerPixel(mBitmapConfig),
+                    budget);
+            mRenderBlurRadius = BlurQuality.radius(extentPx, mRenderDownScaleFactor);
+        }
+
+        float multiplier = mQualityController.getDownscaleMultiplier();
+        if (multiplier > 1) {
+            // The radius shrinks as much, the blur keeps its extent on screen
+            mRenderDownScaleFactor = Math.min(BlurQuality.MAX_AUTO_DOWNSCALE,
+                    mRenderDownScaleFactor * multiplier);
+            mRenderBlurRadius = Math.max(PickerUIBlur.MIN_BLUR_RADIUS,
+                    Math.round(mRenderBlurRadius / multiplier));
+        }
+    }
+
+    /**
+     * Sets the region of the next snapshot: the panel's, from the bottom of its parent up to its
+     * height, extended above by the distance the blur reaches in pixels of the screen. Empty to
+     * capture the whole screen.
+     */
+    private void updateSnapshotRegion(View snapshotView) {
+        mSnapshotRegion.setEmpty();
+        mSnapshotPanelTop = 0;
+        View panel = mSnapshotExcludedView;
+        if (!mBlurPanelOnly || snapshotView == null || panel == null
+                || !(panel.getParent() instanceof View)) {
+            return;
+        }
+
+        // The panel is gone until it slides up, its parent gives where its bottom will be
+        View container = (View) panel.getParent();
+        container.getLocationInWindow(mLocation);
+        int bottom = mLocation[1] + container.getHeight();
+        snapshotView.getLocationInWindow(mLocation);
+        mSnapshotHeight = snapshotView.getHeight();
+        bottom = Math.max(0, Math.min(mSnapshotHeight, bottom - mLocation[1]));
+
+        ViewGroup.LayoutParams params = panel.getLayoutParams();
+        int panelHeight = params != null && params.height > 0 ? params.height
+                : mContext.getResources().getDimensionPixelSize(
+                R.dimen.height_hidden_panel_pickerui);
+        int support = Blur.support(mRenderBlurEngine, mRenderBlurRadius);
+        int margin = (int) Math.ceil((support < 0 ? mRenderBlurRadius : support)
+                * mRenderDownScaleFactor);
+
+        mSnapshotPanelTop = Math.max(0, bottom - panelHeight);
+        mSnapshotRegion.set(0, Math.max(0, mSnapshotPanelTop - margin), snapshotView.getWidth(),
+                bottom);
+    }
+
+    /**
+     * Called when the blur of an open is delivered, for the metrics and the quality controller.
+     */
+    private void recordBlurTime() {
+        long blurTime = mBlurScheduler.getLastBlurTime();
+        if (mMetrics != null) {
+            mMetrics.record(PickerUIMetrics.PHASE_BLUR, blurTime);
+        }
+        mQualityController.onLatency(mLastCaptureTime + blurTime);
+    }
+
     /**
      * Set a callback listener when blur has finished
      *
@@ -334,6 +1281,74 @@ public class PickerUIBlurHelper {
         this.mBlurFinishedListener = listener;
     }
 
+    /**
+     * Hands a capture finished on the blur thread to its listener, unless it was replaced or
+     * cancelled meanwhile.
+     */
+    private class PendingCapture implements PickerUIBlurScheduler.CaptureFinishedListener {
+
+        private final SnapshotListener mListener;
+
+        private PendingCapture(SnapshotListener listener) {
+            mListener = listener;
+        }
+
+        @Override
+        public void onCaptureFinished(Bitmap snapshot, boolean captured, long captureTime) {
+            if (mPendingCapture != this) {
+                if (captured) {
+                    mBitmapPool.put(snapshot);
+                }
+                return;
+            }
+            mPendingCapture = null;
+            if (mMetrics != null) {
+                mMetrics.record(PickerUIMetrics.PHASE_CAPTURE_FINISH, captureTime);
+            }
+            if (captured) {
+                mLastCaptureTime += captureTime;
+                mListener.onSnapshot(snapshot);
+            } else if (mListener == mLiveSnapshotListener) {
+                // The panel is shown now, the frame is skipped
+                Log.w(LOG_TAG, "Capture failed, live frame skipped");
+            } else {
+                // The failed bitmap is left to the garbage collector, a late copy could still
+                // write it
+                Log.w(LOG_TAG, "Capture failed, drawing the screen on the main thread");
+                takeSnapshot(PickerUIBlur.getCaptureStrategy(PickerUIBlur.CAPTURE_DRAW),
+                        mListener);
+            }
+        }
+    }
+
+    /**
+     * Keeps the result of a prepared blur in the cache, and hands it to the picker if it was
+     * opened on the same screen while blurring.
+     */
+    private class PreparedBlurListener implements BlurFinishedListener {
+
+        private final BlurResultCache.Key mKey;
+        private BlurFinishedListener mTarget;
+
+        private PreparedBlurListener(BlurResultCache.Key key) {
+            mKey = key;
+        }
+
+        @Override
+        public void onBlurFinished(Bitmap bitmapWithBlur) {
+            if (mPreparedBlur == this) {
+                mPreparedBlur = null;
+            }
+            mBlurResultCache.put(mKey, bitmapWithBlur);
+            if (mTarget != null) {
+                recordBlurTime();
+                mTarget.onBlurFinished(bitmapWithBlur);
+            } else {
+                mBitmapPool.put(bitmapWithBlur);
+            }
+        }
+    }
+
     /**
      * Interface for a callback when blur has finished
      */
@@ -346,4 +1361,17 @@ public class PickerUIBlurHelper {
          */
         void onBlurFinished(Bitmap bitmapWithBlur);
     }
+
+    /**
+     * Interface for a callback when the snapshot was captured
+     */
+    private interface SnapshotListener {
+
+        /**
+         * Callback when the snapshot was captured, on the main thread
+         *
+         * @param snapshot the layout downscaled, or null if it can't be captured yet
+         */
+        void onSnapshot(Bitmap snapshot);
+    }
 }
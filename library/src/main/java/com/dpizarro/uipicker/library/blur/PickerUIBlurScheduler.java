@@ -0,0 +1,262 @@
+package com.dpizarro.uipicker.library.blur;
+
+import com.dpizarro.uipicker.blur.BlurTint;
+import com.dpizarro.uipicker.library.metrics.PickerUITrace;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Runs the blurs of one picker on its own thread, instead of the serial executor of AsyncTask
+ * shared with the rest of the app.
+ *
+ * Only the newest render matters: a render that has not started yet is replaced by the next one,
+ * a blur already running is cancelled between groups of lines, and only the result of the last
+ * render reaches the {@link PickerUIBlurHelper.BlurFinishedListener}. Snapshots of dropped
+ * renders go back to the {@link BitmapPool}.
+ *
+ * Deferred captures, see {@link CaptureStrategy}, are finished on the same thread: always, and
+ * before any blur scheduled after them.
+ */
+class PickerUIBlurScheduler {
+
+    private final BlurWorkspace mBlurWorkspace;
+    private final BitmapPool mBitmapPool;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Task posted to the blur thread and not started yet. Set from the main thread, taken by the
+     * blur thread when the task starts.
+     */
+    private final AtomicReference<PickerUIBlurTask> mPendingTask =
+            new AtomicReference<PickerUIBlurTask>();
+
+    /**
+     * The last task scheduled, the only one whose result is delivered. Main thread only.
+     */
+    private PickerUIBlurTask mLatestTask;
+    private PickerUIBlurHelper.BlurFinishedListener mBlurFinishedListener;
+    private long mLastBlurTime;
+
+    private HandlerThread mThread;
+    private Handler mHandler;
+    /**
+     * 'true' from {@link PickerUIBlurScheduler#quit()} until the thread is started again. The
+     * results delivered meanwhile are dropped, the pool was cleared with the picker detached.
+     */
+    private boolean mQuit;
+    private int mThreadPriority = PickerUIBlur.DEFAULT_BLUR_THREAD_PRIORITY;
+
+    PickerUIBlurScheduler(BlurWorkspace workspace, BitmapPool bitmapPool) {
+        mBlurWorkspace = workspace;
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * Blurs a snapshot, replacing any render still pending or running. Must be called from the
+     * main thread.
+     *
+     * @param context              renderscript requires an android context
+     * @param snapshot             the snapshot to blur in place, null if it couldn't be taken
+     * @param radius               the radius to apply in the blur task
+     * @param engine               the algorithm used to blur the snapshot
+     * @param tint                 the filter color and alpha to apply, may be null
+     * @param blurFinishedListener listener to notify when blur finished, on the main thread
+     */
+    void schedule(Context context, Bitmap snapshot, int radius, BlurEngine engine, BlurTint tint,
+            PickerUIBlurHelper.BlurFinishedListener blurFinishedListener) {
+        PickerUIBlurTask task = new PickerUIBlurTask(this, context, snapshot, radius, engine, tint,
+                mBlurWorkspace);
+        mLatestTask = task;
+        mBlurFinishedListener = blurFinishedListener;
+
+        dropPendingTask(task);
+        mBlurWorkspace.cancel();
+        getHandler().post(task);
+    }
+
+    /**
+     * Finishes a capture on the blur thread, ahead of the blurs scheduled after it. Must be called
+     * from the main thread.
+     *
+     * @param capture  the rest of the capture
+     * @param snapshot the bitmap being captured
+     * @param listener listener to notify when the capture finished, on the main thread
+     */
+    void finishCapture(final CaptureStrategy.Capture capture, final Bitmap snapshot,
+            final CaptureFinishedListener listener) {
+        getHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                final boolean captured;
+                PickerUITrace.begin(PickerUITrace.CAPTURE_FINISH);
+                try {
+                    captured = capture.finish(snapshot);
+                } finally {
+                    PickerUITrace.end();
+                }
+                final long captureTime = System.nanoTime() - start;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mQuit) {
+                            // Like the blurs, left to the garbage collector
+                            return;
+                        }
+                        listener.onCaptureFinished(snapshot, captured, captureTime);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops the pending render and cancels the running one, nothing will be delivered. Must be
+     * called from the main thread.
+     */
+    void cancel() {
+        mLatestTask = null;
+        dropPendingTask(null);
+        mBlurWorkspace.cancel();
+    }
+
+    /**
+     * Cancels every render and stops the blur thread. It is started again by the next render.
+     */
+    void quit() {
+        cancel();
+        mQuit = true;
+        if (mThread != null) {
+            mThread.quit();
+            mThread = null;
+            mHandler = null;
+        }
+    }
+
+    /**
+     * @return 'true' if a render was scheduled and its result was not delivered yet
+     */
+    boolean isRendering() {
+        return mLatestTask != null;
+    }
+
+    /**
+     * @return time in nanoseconds spent blurring the last result delivered. Main thread only.
+     */
+    long getLastBlurTime() {
+        return mLastBlurTime;
+    }
+
+    /**
+     * Priority of the blur thread and of the threads of {@link ParallelStackBlurEngine}, one of
+     * the priorities of {@link Process}.
+     *
+     * @param priority a Linux priority, from {@link Process#THREAD_PRIORITY_URGENT_DISPLAY} to
+     *                 {@link Process#THREAD_PRIORITY_LOWEST}
+     */
+    void setThreadPriority(int priority) {
+        if (priority < Process.THREAD_PRIORITY_URGENT_DISPLAY
+                || priority > Process.THREAD_PRIORITY_LOWEST) {
+            throw new IllegalArgumentException("Invalid blur thread priority");
+        }
+        mThreadPriority = priority;
+        ParallelStackBlurEngine.setThreadPriority(priority);
+        if (mThread != null && mThread.getThreadId() != -1) {
+            Process.setThreadPriority(mThread.getThreadId(), priority);
+        }
+    }
+
+    /**
+     * Called by the blur thread before blurring.
+     *
+     * @return 'false' if the task was replaced by a newer render and must not run
+     */
+    boolean onTaskStarted(PickerUIBlurTask task) {
+        return mPendingTask.compareAndSet(task, null);
+    }
+
+    /**
+     * Called by the blur thread once the task has finished or was cancelled.
+     */
+    void onTaskFinished(final PickerUIBlurTask task, final boolean blurred) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                deliver(task, blurred);
+            }
+        });
+    }
+
+    private void deliver(PickerUIBlurTask task, boolean blurred) {
+        if (mQuit) {
+            // Left to the garbage collector
+            return;
+        }
+        if (task != mLatestTask || !blurred) {
+            mBitmapPool.put(task.getBitmap());
+            return;
+        }
+        mLatestTask = null;
+        mLastBlurTime = task.getBlurTime();
+        mBlurFinishedListener.onBlurFinished(task.getBitmap());
+    }
+
+    private void dropPendingTask(PickerUIBlurTask replacement) {
+        PickerUIBlurTask pending = mPendingTask.getAndSet(replacement);
+        if (pending != null) {
+            // If it was already taken by the thread, it will see it was replaced and return
+            if (mHandler != null) {
+                mHandler.removeCallbacks(pending);
+            }
+            mBitmapPool.put(pending.getBitmap());
+        }
+    }
+
+    private Handler getHandler() {
+        if (mHandler == null) {
+            mQuit = false;
+            mThread = new HandlerThread("PickerUIBlur", mThreadPriority);
+            mThread.start();
+            mHandler = new Handler(mThread.getLooper());
+        }
+        return mHandler;
+    }
+
+    /**
+     * Interface for a callback when a deferred capture has finished
+     */
+    interface CaptureFinishedListener {
+
+        /**
+         * Callback when the capture has finished, on the main thread
+         *
+         * @param snapshot    the bitmap captured
+         * @param captured    'false' if the capture failed
+         * @param captureTime time in nanoseconds spent on the blur thread
+         */
+        void onCaptureFinished(Bitmap snapshot, boolean captured, long captureTime);
+    }
+}
@@ -1,10 +1,12 @@
 package com.dpizarro.uipicker.library.blur;
 
-import android.app.Activity;
+import com.dpizarro.uipicker.blur.BlurTint;
+import com.dpizarro.uipicker.library.metrics.PickerUITrace;
+
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.os.AsyncTask;
-import android.view.View;
+
+import java.util.concurrent.CancellationException;
 
 /*
  * Copyright (C) 2015 David Pizarro
@@ -21,99 +23,89 @@ import android.view.View;
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-public class PickerUIBlurTask extends AsyncTask<Void, Void, Bitmap> {
 
+/**
+ * One blur of a snapshot, run by the {@link PickerUIBlurScheduler} on its thread.
+ */
+class PickerUIBlurTask implements Runnable {
 
-    private final PickerUIBlurHelper.BlurFinishedListener mBlurFinishedListener;
+    private final PickerUIBlurScheduler mScheduler;
     /**
-     * Blur state
-     *
-     * If 'READY' we can render
-     * if 'EXECUTING', we are rendering the background
+     * Bitmap to save the downscaled image, blurred in place
      */
-    private State mState = State.READY;
+    private final Bitmap mBitmapDownscaled;
+    private final int mBlurRadius;
+    private final Context mContext;
+    private final BlurEngine mBlurEngine;
+    private final BlurTint mBlurTint;
+    private final BlurWorkspace mBlurWorkspace;
     /**
-     * Bitmap to save the downscaled image
+     * Time spent blurring in nanoseconds, read on the main thread once the task has finished
      */
-    private Bitmap mBitmapDownscaled;
-    private int mBlurRadius;
-    private Activity activity;
-    private boolean useRenderScript;
-
+    private long mBlurTime;
 
     /**
      * Constructor
      *
-     * @param a                    Activity is necessary to snapshot the view
-     * @param radius               the radius to apply in Blur task.
-     * @param blurFinishedListener listener to notify when blur finished.
+     * @param scheduler        the scheduler running the task.
+     * @param context          renderscript requires an android context.
+     * @param bitmapDownscaled the snapshot to blur, already downscaled.
+     * @param radius           the radius to apply in Blur task.
+     * @param engine           the algorithm used to blur the snapshot.
+     * @param tint             the filter color and alpha to apply, may be null.
+     * @param workspace        scratch buffers reused between blurs.
      */
-    public PickerUIBlurTask(Activity a, int radius,
-            PickerUIBlurHelper.BlurFinishedListener blurFinishedListener, boolean useRenderScript) {
-        activity = a;
+    PickerUIBlurTask(PickerUIBlurScheduler scheduler, Context context, Bitmap bitmapDownscaled,
+            int radius, BlurEngine engine, BlurTint tint, BlurWorkspace workspace) {
+        mScheduler = scheduler;
+        mContext = context;
+        mBitmapDownscaled = bitmapDownscaled;
         mBlurRadius = radius < 1 ? 1 : radius;
-        mBlurFinishedListener = blurFinishedListener;
-        this.useRenderScript = useRenderScript;
+        mBlurEngine = engine;
+        mBlurTint = tint;
+        mBlurWorkspace = workspace;
     }
 
-    /**
-     * Snapshots the specified layout with {@link PickerUIBlurHelper#loadBitmapFromView(View)} and
-     * scale it using
-     * {@link
-     * PickerUIBlurHelper#downscaleBitmap(Bitmap)}()}
-     */
-    @Override
-    protected void onPreExecute() {
-        super.onPreExecute();
-        if (mState.equals(State.READY)) {
-            mState = State.EXECUTING;
-            //The view that we take snapshot
-            View snapshotView = activity.getWindow().getDecorView()
-                    .findViewById(android.R.id.content);
-            Bitmap bitmapDecorView = PickerUIBlurHelper.loadBitmapFromView(snapshotView);
-            if(bitmapDecorView!=null)
-                mBitmapDownscaled = PickerUIBlurHelper.downscaleBitmap(bitmapDecorView);
-        } else {
-            cancel(true);
-        }
+    Bitmap getBitmap() {
+        return mBitmapDownscaled;
     }
 
-    /**
-     * We blur the scaled bitmap with the preferred blur radius.
-     * Process the image using renderscript if possible with {@link Blur#apply(Context, Bitmap, int,
-     * boolean)}
-     *
-     * @return blurred image
-     */
-    @Override
-    protected Bitmap doInBackground(Void... params) {
-        if (mState.equals(State.EXECUTING) && mBitmapDownscaled != null) {
-            return Blur.apply(activity, mBitmapDownscaled, mBlurRadius, useRenderScript);
-        } else {
-            return null;
-        }
+    long getBlurTime() {
+        return mBlurTime;
     }
 
     /**
-     * Finally, we post the blurred image in our listener
-     *
-     * @param blurredBitmap Blurred image in {@link PickerUIBlurTask#doInBackground(Void...)}
+     * We blur the scaled bitmap with the preferred blur radius and engine, only blurring again
+     * what changed since the last render with {@link IncrementalBlur#apply(Context, Bitmap, int,
+     * BlurEngine, BlurWorkspace)}, and hand the result back to the scheduler, unless a newer
+     * render replaced this task.
      */
     @Override
-    protected void onPostExecute(Bitmap blurredBitmap) {
-
-        super.onPostExecute(blurredBitmap);
-        activity = null;
-        if (mBlurFinishedListener == null) {
-            throw new IllegalStateException("You must assign a valid BlurFinishedListener first!");
+    public void run() {
+        // Cleared before the check, so a render arriving meanwhile still cancels this blur
+        mBlurWorkspace.resetCancel();
+        if (!mScheduler.onTaskStarted(this)) {
+            return;
         }
-        mBlurFinishedListener.onBlurFinished(blurredBitmap);
-
-        mState = State.READY;
-    }
 
-    private enum State {
-        READY,
-        EXECUTING
+        boolean blurred = false;
+        if (mBitmapDownscaled != null) {
+            try {
+                long start = System.nanoTime();
+                PickerUITrace.begin(PickerUITrace.BLUR_TASK);
+                try {
+                    mBlurWorkspace.setTint(mBlurTint);
+                    IncrementalBlur.apply(mContext, mBitmapDownscaled, mBlurRadius, mBlurEngine,
+                            mBlurWorkspace);
+                } finally {
+                    PickerUITrace.end();
+                }
+                mBlurTime = System.nanoTime() - start;
+                blurred = true;
+            } catch (CancellationException e) {
+                // A newer render is already waiting
+            }
+        }
+        mScheduler.onTaskFinished(this, blurred || mBitmapDownscaled == null);
     }
 }
@@ -0,0 +1,60 @@
+package com.dpizarro.uipicker.library.blur;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.view.View;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Records the drawing of the view in a {@link Picture} on the main thread and replays it into
+ * the snapshot on the blur thread. Recording only keeps the drawing commands, the pixels are
+ * rasterized and scaled down off the main thread.
+ *
+ * Views drawn by the GPU only, like a SurfaceView or a TextureView, are missing as with the
+ * synchronous draw.
+ */
+public class PictureCaptureStrategy implements CaptureStrategy {
+
+    @Override
+    public Capture capture(View view, Rect region, Bitmap snapshot) {
+        Picture picture = new Picture();
+        Canvas canvas = picture.beginRecording(region.width(), region.height());
+        canvas.translate(-region.left, -region.top);
+        view.draw(canvas);
+        picture.endRecording();
+        return new PictureCapture(picture);
+    }
+
+    private static class PictureCapture implements Capture {
+
+        private final Picture mPicture;
+
+        private PictureCapture(Picture picture) {
+            mPicture = picture;
+        }
+
+        @Override
+        public boolean finish(Bitmap snapshot) {
+            Canvas canvas = DrawCaptureStrategy.createCanvas(snapshot, mPicture.getWidth(),
+                    mPicture.getHeight());
+            canvas.drawPicture(mPicture);
+            return true;
+        }
+    }
+}
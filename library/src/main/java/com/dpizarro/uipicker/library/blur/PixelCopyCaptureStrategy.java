@@ -0,0 +1,154 @@
+package com.dpizarro.uipicker.library.blur;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.view.Window;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Copies the region from the surface of the window with PixelCopy, scaled down by the GPU, and
+ * waits for the copy on the blur thread. The main thread only sends the request, and the views
+ * drawn by the GPU only are captured too.
+ *
+ * The window shows what is on screen, so the blurred background and the panel must not be shown
+ * while capturing. It needs Android 8.0 and a hardware accelerated window, otherwise the screen
+ * is captured by a {@link PictureCaptureStrategy}. The library is compiled against an older SDK,
+ * so PixelCopy is called by reflection.
+ */
+public class PixelCopyCaptureStrategy implements CaptureStrategy {
+
+    private static final String LOG_TAG = PixelCopyCaptureStrategy.class.getSimpleName();
+
+    /**
+     * Android 8.0, the first version copying a region of a window
+     */
+    private static final int VERSION_O = 26;
+
+    /**
+     * PixelCopy.SUCCESS
+     */
+    private static final int COPY_SUCCESS = 0;
+
+    /**
+     * Longest wait for the copy in milliseconds, the snapshot is then drawn on the main thread
+     */
+    private static final long COPY_TIMEOUT = 500;
+
+    private static final Handler sCopyHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * PixelCopy.request(Window, Rect, Bitmap, OnPixelCopyFinishedListener, Handler) and its
+     * listener interface, looked up on the first capture. Main thread only.
+     */
+    private static Method sRequest;
+    private static Class<?> sListenerClass;
+    private static boolean sLookedUp;
+
+    private final CaptureStrategy mFallback = new PictureCaptureStrategy();
+    private final int[] mLocation = new int[2];
+
+    @Override
+    public Capture capture(View view, Rect region, Bitmap snapshot) {
+        if (Build.VERSION.SDK_INT < VERSION_O || !view.isHardwareAccelerated()
+                || !(view.getContext() instanceof Activity) || !lookUpPixelCopy()) {
+            return mFallback.capture(view, region, snapshot);
+        }
+
+        view.getLocationInWindow(mLocation);
+        Rect source = new Rect(region);
+        source.offset(mLocation[0], mLocation[1]);
+        PixelCopyCapture capture = new PixelCopyCapture();
+        Object listener = Proxy.newProxyInstance(sListenerClass.getClassLoader(),
+                new Class<?>[]{sListenerClass}, capture);
+        Window window = ((Activity) view.getContext()).getWindow();
+        try {
+            sRequest.invoke(null, window, source, snapshot, listener, sCopyHandler);
+        } catch (Exception e) {
+            Log.w(LOG_TAG, "PixelCopy request failed, recording the screen instead", e);
+            return mFallback.capture(view, region, snapshot);
+        }
+        return capture;
+    }
+
+    /**
+     * @return 'true' if PixelCopy was found
+     */
+    private static boolean lookUpPixelCopy() {
+        if (!sLookedUp) {
+            sLookedUp = true;
+            try {
+                Class<?> pixelCopy = Class.forName("android.view.PixelCopy");
+                sListenerClass = Class
+                        .forName("android.view.PixelCopy$OnPixelCopyFinishedListener");
+                sRequest = pixelCopy.getMethod("request", Window.class, Rect.class,
+                        Bitmap.class, sListenerClass, Handler.class);
+            } catch (Exception e) {
+                Log.w(LOG_TAG, "PixelCopy not available", e);
+                sRequest = null;
+            }
+        }
+        return sRequest != null;
+    }
+
+    /**
+     * Receives the result of the copy through a proxy of OnPixelCopyFinishedListener, on the main
+     * thread, and hands it to the blur thread.
+     */
+    private static class PixelCopyCapture implements Capture, InvocationHandler {
+
+        private final CountDownLatch mCopied = new CountDownLatch(1);
+        private volatile int mResult;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if ("onPixelCopyFinished".equals(name)) {
+                mResult = (Integer) args[0];
+                mCopied.countDown();
+                return null;
+            } else if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            return "PixelCopyCapture";
+        }
+
+        @Override
+        public boolean finish(Bitmap snapshot) {
+            try {
+                return mCopied.await(COPY_TIMEOUT, TimeUnit.MILLISECONDS)
+                        && mResult == COPY_SUCCESS;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
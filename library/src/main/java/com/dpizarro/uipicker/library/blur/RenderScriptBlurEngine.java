@@ -0,0 +1,290 @@
+package com.dpizarro.uipicker.library.blur;
+
+import com.dpizarro.uipicker.blur.BlurTint;
+import com.dpizarro.uipicker.blur.StackBlur;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.renderscript.Allocation;
+import android.renderscript.Element;
+import android.renderscript.RenderScript;
+import android.renderscript.ScriptIntrinsicBlur;
+import android.renderscript.ScriptIntrinsicLUT;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Blur with RenderScript's ScriptIntrinsicBlur, using the support library before JellyBean MR1.
+ *
+ * The kernel runs on the GPU or on every CPU core, so it's the fastest engine for big snapshots
+ * on recent devices. The RenderScript context and the intrinsic are created once per process and
+ * the allocations are kept while the snapshot size doesn't change, so repeated blurs only pay for
+ * the kernel, with or without a picker retaining them. Everything is destroyed when the last
+ * picker is detached, see {@link RenderScriptBlurEngine#release()}, or on memory pressure when no
+ * picker is attached. Radius values are capped to 25.
+ */
+public class RenderScriptBlurEngine implements BlurEngine {
+
+    /**
+     * Maximum radius supported by ScriptIntrinsicBlur
+     */
+    private static final int MAX_RENDERSCRIPT_RADIUS = 25;
+
+    /**
+     * Guards every RenderScript object, blurs and teardown may happen on different threads.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * Number of pickers that may blur with RenderScript
+     */
+    private static int sUsers;
+
+    private static RenderScript sRenderScript;
+    private static ScriptIntrinsicBlur sScript;
+    private static ScriptIntrinsicLUT sLutScript;
+    private static Allocation sInput;
+    private static Allocation sOutput;
+
+    private static android.support.v8.renderscript.RenderScript sSupportRenderScript;
+    private static android.support.v8.renderscript.ScriptIntrinsicBlur sSupportScript;
+    private static android.support.v8.renderscript.ScriptIntrinsicLUT sSupportLutScript;
+    private static android.support.v8.renderscript.Allocation sSupportInput;
+    private static android.support.v8.renderscript.Allocation sSupportOutput;
+
+    /**
+     * Bitmap shared with the allocations, the pixels go through it.
+     */
+    private static Bitmap sBitmap;
+
+    /**
+     * Tint loaded in the lookup table scripts
+     */
+    private static BlurTint sLutTint;
+
+    /**
+     * Registers a user of the RenderScript objects. Must be balanced with {@link
+     * RenderScriptBlurEngine#release()}.
+     */
+    public static void retain() {
+        synchronized (LOCK) {
+            sUsers++;
+        }
+    }
+
+    /**
+     * Unregisters a user of the RenderScript objects. When there are no users left, the
+     * allocations, the intrinsic and the RenderScript context are destroyed.
+     */
+    public static void release() {
+        synchronized (LOCK) {
+            if (sUsers > 0) {
+                sUsers--;
+            }
+            if (sUsers == 0) {
+                destroyAllocations();
+                destroyContexts();
+            }
+        }
+    }
+
+    /**
+     * Destroys the allocations, used when the system is running low on memory. The RenderScript
+     * context is kept while a picker is attached, it's the expensive part to create; without
+     * users, for example after blurring with {@link Blur#apply(Context, Bitmap)}, it is destroyed
+     * too.
+     */
+    public static void trimMemory() {
+        synchronized (LOCK) {
+            destroyAllocations();
+            if (sUsers == 0) {
+                destroyContexts();
+            }
+        }
+    }
+
+    /**
+     * If the device is older than JellyBean MR1 the support library is used. If RenderScript
+     * fails, the pixels are blurred with the stack blur instead.
+     */
+    @Override
+    public void blur(Context context, int[] pixels, int width, int height, int radius,
+            BlurWorkspace workspace) {
+        radius = Math.min(radius, MAX_RENDERSCRIPT_RADIUS);
+        // The script can't be stopped once it is running
+        workspace.checkCancelled();
+        BlurTint tint = workspace.takeTint();
+
+        synchronized (LOCK) {
+            try {
+                if (sBitmap == null || sBitmap.getWidth() != width
+                        || sBitmap.getHeight() != height) {
+                    destroyAllocations();
+                    sBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                }
+                sBitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+
+                if (Build.VERSION.SDK_INT > Build.VERSION_CODES.JELLY_BEAN) {
+                    blurFramework(context, radius, tint);
+                } else {
+                    blurSupport(context, radius, tint);
+                }
+                sBitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+                return;
+            } catch (Exception e) {
+                // The context may be unusable, the next blur creates everything again
+                destroyAllocations();
+                destroyContexts();
+            }
+        }
+        StackBlur.blur(pixels, width, height, radius, workspace);
+    }
+
+    /**
+     * The tint runs as a ScriptIntrinsicLUT over the output of the blur, before the pixels are
+     * copied back. See {@link BlurTint#premultipliedTable(int, int)}.
+     */
+    @SuppressLint("NewApi")
+    private static void blurFramework(Context context, int radius, BlurTint tint) {
+        if (sRenderScript == null) {
+            sRenderScript = RenderScript.create(context.getApplicationContext());
+            sScript = ScriptIntrinsicBlur.create(sRenderScript, Element.U8_4(sRenderScript));
+        }
+        if (sInput == null) {
+            //use this constructor for best performance, because it uses USAGE_SHARED mode which reuses memory
+            sInput = Allocation.createFromBitmap(sRenderScript, sBitmap);
+            sOutput = Allocation.createTyped(sRenderScript, sInput.getType());
+        } else {
+            sInput.copyFrom(sBitmap);
+        }
+        sScript.setRadius(radius);
+        sScript.setInput(sInput);
+        sScript.forEach(sOutput);
+        if (tint == null) {
+            sOutput.copyTo(sBitmap);
+            return;
+        }
+
+        if (sLutScript == null) {
+            sLutScript = ScriptIntrinsicLUT.create(sRenderScript, Element.U8_4(sRenderScript));
+            sLutTint = null;
+        }
+        if (sLutTint != tint) {
+            for (int i = 0; i < 256; i++) {
+                sLutScript.setAlpha(i, tint.premultipliedTable(0, i));
+                sLutScript.setRed(i, tint.premultipliedTable(1, i));
+                sLutScript.setGreen(i, tint.premultipliedTable(2, i));
+                sLutScript.setBlue(i, tint.premultipliedTable(3, i));
+            }
+            sLutTint = tint;
+        }
+        // The input is not needed anymore, it receives the tinted pixels
+        sLutScript.forEach(sOutput, sInput);
+        sInput.copyTo(sBitmap);
+    }
+
+    private static void blurSupport(Context context, int radius, BlurTint tint) {
+        if (sSupportRenderScript == null) {
+            sSupportRenderScript = android.support.v8.renderscript.RenderScript
+                    .create(context.getApplicationContext());
+            sSupportScript = android.support.v8.renderscript.ScriptIntrinsicBlur
+                    .create(sSupportRenderScript,
+                            android.support.v8.renderscript.Element.U8_4(sSupportRenderScript));
+        }
+        if (sSupportInput == null) {
+            //use this constructor for best performance, because it uses USAGE_SHARED mode which reuses memory
+            sSupportInput = android.support.v8.renderscript.Allocation
+                    .createFromBitmap(sSupportRenderScript, sBitmap);
+            sSupportOutput = android.support.v8.renderscript.Allocation
+                    .createTyped(sSupportRenderScript, sSupportInput.getType());
+        } else {
+            sSupportInput.copyFrom(sBitmap);
+        }
+        sSupportScript.setRadius(radius);
+        sSupportScript.setInput(sSupportInput);
+        sSupportScript.forEach(sSupportOutput);
+        if (tint == null) {
+            sSupportOutput.copyTo(sBitmap);
+            return;
+        }
+
+        if (sSupportLutScript == null) {
+            sSupportLutScript = android.support.v8.renderscript.ScriptIntrinsicLUT
+                    .create(sSupportRenderScript,
+                            android.support.v8.renderscript.Element.U8_4(sSupportRenderScript));
+            sLutTint = null;
+        }
+        if (sLutTint != tint) {
+            for (int i = 0; i < 256; i++) {
+                sSupportLutScript.setAlpha(i, tint.premultipliedTable(0, i));
+                sSupportLutScript.setRed(i, tint.premultipliedTable(1, i));
+                sSupportLutScript.setGreen(i, tint.premultipliedTable(2, i));
+                sSupportLutScript.setBlue(i, tint.premultipliedTable(3, i));
+            }
+            sLutTint = tint;
+        }
+        // The input is not needed anymore, it receives the tinted pixels
+        sSupportLutScript.forEach(sSupportOutput, sSupportInput);
+        sSupportInput.copyTo(sBitmap);
+    }
+
+    @SuppressLint("NewApi")
+    private static void destroyAllocations() {
+        if (sInput != null) {
+            sInput.destroy();
+            sOutput.destroy();
+            sInput = null;
+            sOutput = null;
+        }
+        if (sSupportInput != null) {
+            sSupportInput.destroy();
+            sSupportOutput.destroy();
+            sSupportInput = null;
+            sSupportOutput = null;
+        }
+        if (sBitmap != null) {
+            sBitmap.recycle();
+            sBitmap = null;
+        }
+    }
+
+    @SuppressLint("NewApi")
+    private static void destroyContexts() {
+        if (sLutScript != null) {
+            sLutScript.destroy();
+            sLutScript = null;
+        }
+        if (sSupportLutScript != null) {
+            sSupportLutScript.destroy();
+            sSupportLutScript = null;
+        }
+        sLutTint = null;
+        if (sRenderScript != null) {
+            sScript.destroy();
+            sRenderScript.destroy();
+            sScript = null;
+            sRenderScript = null;
+        }
+        if (sSupportRenderScript != null) {
+            sSupportScript.destroy();
+            sSupportRenderScript.destroy();
+            sSupportScript = null;
+            sSupportRenderScript = null;
+        }
+    }
+}
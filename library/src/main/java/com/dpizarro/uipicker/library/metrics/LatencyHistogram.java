@@ -0,0 +1,87 @@
+package com.dpizarro.uipicker.library.metrics;
+
+import java.util.Arrays;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Rolling window of the last durations of a phase, to poll its percentiles. Adding a duration
+ * costs a store in a ring, the window is only sorted when a percentile is asked for. Safe to poll
+ * from any thread.
+ */
+public class LatencyHistogram {
+
+    private final long[] mSamples;
+    private final long[] mSorted;
+    private int mNext;
+    private int mCount;
+
+    /**
+     * @param windowSize number of durations kept, the oldest is dropped when it is full
+     */
+    public LatencyHistogram(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Invalid window size");
+        }
+        mSamples = new long[windowSize];
+        mSorted = new long[windowSize];
+    }
+
+    /**
+     * @param nanos a duration in nanoseconds
+     */
+    public synchronized void add(long nanos) {
+        mSamples[mNext] = nanos;
+        mNext = (mNext + 1) % mSamples.length;
+        if (mCount < mSamples.length) {
+            mCount++;
+        }
+    }
+
+    /**
+     * @return number of durations in the window
+     */
+    public synchronized int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Nearest-rank percentile of the durations in the window.
+     *
+     * @param percentile from 0 to 100, for example 50, 95 or 99
+     * @return the duration in milliseconds, or -1 if the window is empty
+     */
+    public synchronized float getPercentile(float percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile");
+        }
+        if (mCount == 0) {
+            return -1;
+        }
+        System.arraycopy(mSamples, 0, mSorted, 0, mCount);
+        Arrays.sort(mSorted, 0, mCount);
+        int rank = (int) Math.ceil(percentile / 100 * mCount);
+        return mSorted[Math.max(0, rank - 1)] / 1000000f;
+    }
+
+    /**
+     * Empties the window.
+     */
+    public synchronized void clear() {
+        mNext = 0;
+        mCount = 0;
+    }
+}
@@ -0,0 +1,63 @@
+package com.dpizarro.uipicker.library.metrics;
+
+import java.util.Arrays;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Durations of the phases of one opening of the panel, see the phases of {@link PickerUIMetrics}.
+ */
+public final class OpenTimings {
+
+    private final long[] mTimes = new long[PickerUIMetrics.PHASE_COUNT];
+
+    OpenTimings() {
+        Arrays.fill(mTimes, -1);
+    }
+
+    void set(int phase, long nanos) {
+        mTimes[phase] = nanos;
+    }
+
+    /**
+     * @param phase one of the phases of {@link PickerUIMetrics}
+     * @return the duration in nanoseconds, or -1 if the phase didn't run or wasn't measured
+     */
+    public long getTime(int phase) {
+        return mTimes[phase];
+    }
+
+    /**
+     * @param phase one of the phases of {@link PickerUIMetrics}
+     * @return the duration in milliseconds, or -1 if the phase didn't run or wasn't measured
+     */
+    public float getTimeMillis(int phase) {
+        return mTimes[phase] < 0 ? -1 : mTimes[phase] / 1000000f;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("OpenTimings{");
+        for (int phase = 0; phase < mTimes.length; phase++) {
+            if (phase > 0) {
+                builder.append(", ");
+            }
+            builder.append(PickerUIMetrics.getPhaseName(phase)).append('=')
+                    .append(getTimeMillis(phase));
+        }
+        return builder.append('}').toString();
+    }
+}
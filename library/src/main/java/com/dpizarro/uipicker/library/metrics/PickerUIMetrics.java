@@ -0,0 +1,231 @@
+package com.dpizarro.uipicker.library.metrics;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Where the time goes between {@link com.dpizarro.uipicker.library.picker.PickerUI#slide()} and
+ * the panel being shown. Every opening is timed phase by phase, handed to an {@link
+ * OnOpenTimingsListener} once every phase it went through has finished, and added to a rolling
+ * {@link LatencyHistogram} per phase to poll percentiles from.
+ *
+ * The picker and its blur helper drive it from the main thread with {@link
+ * PickerUIMetrics#begin()}, {@link PickerUIMetrics#expect(int)} and {@link
+ * PickerUIMetrics#record(int, long)}; an opening replaced by another or closed before it finished
+ * is dropped.
+ */
+public class PickerUIMetrics {
+
+    /**
+     * Capturing the screen on the main thread: drawing it into the snapshot, or only starting the
+     * capture with a deferred {@link com.dpizarro.uipicker.library.blur.CaptureStrategy}. The
+     * canvas scales the screen down while drawing, so this includes the downscale: there is no
+     * separate step to time
+     */
+    public static final int PHASE_CAPTURE = 0;
+    /**
+     * Blurring the snapshot on the blur thread, 0 if the blur was found in the cache. Includes
+     * the filter color and alpha, written by the last pass of the blur
+     */
+    public static final int PHASE_BLUR = 1;
+    /**
+     * Filter color and alpha applied in a pass of their own, only for the coarse progressive
+     * background
+     */
+    public static final int PHASE_TINT = 2;
+    /**
+     * From handing the blurred bitmap to its view until the view has drawn it
+     */
+    public static final int PHASE_UPLOAD = 3;
+    /**
+     * From starting the panel animation until its first frame
+     */
+    public static final int PHASE_ANIMATION_START = 4;
+    /**
+     * First layout of the list once the panel is shown, binding the visible rows
+     */
+    public static final int PHASE_FIRST_BIND = 5;
+    /**
+     * From the slide until the first frame of the panel animation
+     */
+    public static final int PHASE_TOTAL = 6;
+    /**
+     * Finishing a deferred capture on the blur thread, before the blur: replaying the recorded
+     * screen or waiting for the copy of the window. Not measured with the synchronous draw
+     */
+    public static final int PHASE_CAPTURE_FINISH = 7;
+    /**
+     * Number of phases
+     */
+    public static final int PHASE_COUNT = 8;
+
+    /**
+     * Default number of openings kept by the histograms
+     */
+    public static int DEFAULT_WINDOW_SIZE = 100;
+
+    private static final String[] PHASE_NAMES = {"capture", "blur", "tint", "upload",
+            "animationStart", "firstBind", "total", "captureFinish"};
+
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[PHASE_COUNT];
+    private OnOpenTimingsListener mOnOpenTimingsListener;
+
+    /**
+     * Opening in progress, null if there is none. Main thread only.
+     */
+    private OpenTimings mCurrent;
+    private long mBeginTime;
+    /**
+     * Phases the opening in progress still waits for, one bit per phase
+     */
+    private int mPending;
+
+    public PickerUIMetrics() {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize number of openings kept by the histograms
+     */
+    public PickerUIMetrics(int windowSize) {
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            mHistograms[phase] = new LatencyHistogram(windowSize);
+        }
+    }
+
+    /**
+     * @param phase one of the phases
+     * @return a name for logs, like "blur"
+     */
+    public static String getPhaseName(int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * Set a callback listener for the timings of every opening, called on the main thread.
+     *
+     * @param listener Callback instance, null to remove it.
+     */
+    public void setOnOpenTimingsListener(OnOpenTimingsListener listener) {
+        mOnOpenTimingsListener = listener;
+    }
+
+    /**
+     * @param phase one of the phases
+     * @return the rolling histogram of the phase
+     */
+    public LatencyHistogram getHistogram(int phase) {
+        if (phase < 0 || phase >= PHASE_COUNT) {
+            throw new IllegalArgumentException("Invalid phase");
+        }
+        return mHistograms[phase];
+    }
+
+    /**
+     * @param phase      one of the phases
+     * @param percentile from 0 to 100, for example 50, 95 or 99
+     * @return the duration in milliseconds, or -1 if the phase wasn't measured yet
+     */
+    public float getPercentile(int phase, float percentile) {
+        return getHistogram(phase).getPercentile(percentile);
+    }
+
+    /**
+     * Empties every histogram.
+     */
+    public void clear() {
+        for (LatencyHistogram histogram : mHistograms) {
+            histogram.clear();
+        }
+    }
+
+    /**
+     * Starts timing an opening, dropping the one in progress. It waits for the animation start
+     * and the first bind.
+     */
+    public void begin() {
+        mCurrent = new OpenTimings();
+        mBeginTime = System.nanoTime();
+        mPending = (1 << PHASE_ANIMATION_START) | (1 << PHASE_FIRST_BIND);
+    }
+
+    /**
+     * Drops the opening in progress, if any.
+     */
+    public void cancel() {
+        mCurrent = null;
+        mPending = 0;
+    }
+
+    /**
+     * Makes the opening in progress wait for a phase, ignored if there is none or the phase
+     * already finished.
+     *
+     * @param phase one of the phases
+     */
+    public void expect(int phase) {
+        if (mCurrent != null && mCurrent.getTime(phase) < 0) {
+            mPending |= 1 << phase;
+        }
+    }
+
+    /**
+     * Records the duration of a phase of the opening in progress. Ignored if there is none or
+     * the phase was already recorded; the first frame of the animation also records {@link
+     * PickerUIMetrics#PHASE_TOTAL}.
+     *
+     * @param phase one of the phases
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(int phase, long nanos) {
+        if (mCurrent == null || mCurrent.getTime(phase) >= 0) {
+            return;
+        }
+        mCurrent.set(phase, nanos);
+        if (phase == PHASE_ANIMATION_START) {
+            mCurrent.set(PHASE_TOTAL, System.nanoTime() - mBeginTime);
+        }
+        mPending &= ~(1 << phase);
+        if (mPending == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        OpenTimings timings = mCurrent;
+        mCurrent = null;
+        for (int phase = 0; phase < PHASE_COUNT; phase++) {
+            if (timings.getTime(phase) >= 0) {
+                mHistograms[phase].add(timings.getTime(phase));
+            }
+        }
+        if (mOnOpenTimingsListener != null) {
+            mOnOpenTimingsListener.onOpenTimings(timings);
+        }
+    }
+
+    /**
+     * Interface for a callback with the timings of each opening of the panel
+     */
+    public interface OnOpenTimingsListener {
+
+        /**
+         * Callback when every phase of an opening has finished
+         *
+         * @param timings durations of the phases
+         */
+        void onOpenTimings(OpenTimings timings);
+    }
+}
@@ -0,0 +1,116 @@
+package com.dpizarro.uipicker.library.metrics;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Named trace sections around the hot paths of the picker: the phases of the blur task, the
+ * capture, the binding of the rows and the selection when the list settles. By default they go to
+ * {@link Trace}, so they show up in systrace and Perfetto captures of release builds; before
+ * JellyBean MR2 there is no tracer.
+ *
+ * Another {@link Tracer} can be plugged with {@link PickerUITrace#setTracer(Tracer)}, for
+ * instance to record the sections in JVM tests, and null disables tracing: every section is then
+ * a single null check, the names are constants and nothing is allocated. Sections are per thread,
+ * the tracer must be set before the picker is used.
+ */
+public final class PickerUITrace {
+
+    public static final String BLUR_TASK = "PickerUI.blurTask";
+    public static final String CAPTURE = "PickerUI.capture";
+    public static final String CAPTURE_FINISH = "PickerUI.captureFinish";
+    public static final String COPY_IN = "PickerUI.copyPixelsIn";
+    public static final String BLUR_DIRTY = "PickerUI.blurDirtyTiles";
+    public static final String BLUR_FULL = "PickerUI.blurFull";
+    public static final String KERNEL = "PickerUI.blurKernel";
+    public static final String TINT = "PickerUI.tint";
+    public static final String COPY_OUT = "PickerUI.copyPixelsOut";
+    public static final String GET_VIEW = "PickerUI.getView";
+    public static final String SELECT = "PickerUI.handleSelectEvent";
+    public static final String SCROLL_SETTLE = "PickerUI.scrollSettle";
+
+    private static Tracer sTracer = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2
+            ? new SystemTracer() : null;
+
+    private PickerUITrace() {
+    }
+
+    /**
+     * @param tracer receives every section, null to disable tracing
+     */
+    public static void setTracer(Tracer tracer) {
+        sTracer = tracer;
+    }
+
+    /**
+     * @return the current tracer, null if tracing is disabled
+     */
+    public static Tracer getTracer() {
+        return sTracer;
+    }
+
+    /**
+     * Begins a section on the current thread, it must be ended on the same thread.
+     *
+     * @param name one of the constant names
+     */
+    public static void begin(String name) {
+        Tracer tracer = sTracer;
+        if (tracer != null) {
+            tracer.beginSection(name);
+        }
+    }
+
+    /**
+     * Ends the last section begun on the current thread.
+     */
+    public static void end() {
+        Tracer tracer = sTracer;
+        if (tracer != null) {
+            tracer.endSection();
+        }
+    }
+
+    /**
+     * Receives the trace sections, nested and per thread like {@link Trace}.
+     */
+    public interface Tracer {
+
+        void beginSection(String name);
+
+        void endSection();
+    }
+
+    /**
+     * Sections in the system trace. {@link Trace} only writes them while a trace is recorded.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static class SystemTracer implements Tracer {
+
+        @Override
+        public void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        @Override
+        public void endSection() {
+            Trace.endSection();
+        }
+    }
+}
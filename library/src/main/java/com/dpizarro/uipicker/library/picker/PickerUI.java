@@ -1,8 +1,11 @@
 package com.dpizarro.uipicker.library.picker;
 
 import com.dpizarro.uipicker.library.R;
+import com.dpizarro.uipicker.library.blur.BlurEngine;
+import com.dpizarro.uipicker.library.blur.CaptureStrategy;
 import com.dpizarro.uipicker.library.blur.PickerUIBlur;
 import com.dpizarro.uipicker.library.blur.PickerUIBlurHelper;
+import com.dpizarro.uipicker.library.metrics.PickerUIMetrics;
 
 import android.content.Context;
 import android.content.res.Resources;
@@ -56,6 +59,7 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
     private int mColorTextCenterListView;
     private int mColorTextNoCenterListView;
     private PickerUISettings mPickerUISettings;
+    private final PickerUIMetrics mMetrics = new PickerUIMetrics();
 
     /**
      * Default constructor
@@ -118,6 +122,9 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
         setItemsClickables(itemsClickables);
         mPickerUIBlurHelper = new PickerUIBlurHelper(mContext, attrs);
         mPickerUIBlurHelper.setBlurFinishedListener(this);
+        mPickerUIBlurHelper.setSnapshotExcludedView(mHiddenPanelPickerUI);
+        mPickerUIBlurHelper.setMetrics(mMetrics);
+        mPickerUIListView.setMetrics(mMetrics);
     }
 
     /**
@@ -159,6 +166,22 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
         }
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.onAttachedToWindow();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.onDetachedFromWindow();
+        }
+        super.onDetachedFromWindow();
+    }
+
     /**
      * Slide the panel depending on the current state.
      * If slide up, the position is the half of the elements.
@@ -214,6 +237,7 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
     private void slideUp(int position) {
         //Render to do the blur effect
         this.position = position;
+        mMetrics.begin();
         mPickerUIBlurHelper.render();
     }
 
@@ -221,6 +245,7 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
      * Hide the panel and clear blur image.
      */
     private void hidePanelPickerUI() {
+        mMetrics.cancel();
         Animation bottomDown = AnimationUtils
                 .loadAnimation(mContext, R.anim.picker_panel_bottom_down);
         mHiddenPanelPickerUI.startAnimation(bottomDown);
@@ -337,6 +362,132 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
         showPanelPickerUI();
     }
 
+    /**
+     * Method to show a coarse background at once and fade in the blurred one when it's ready, so
+     * the panel slides up without waiting for the blur
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_PROGRESSIVE_BLUR}
+     *
+     * @param progressiveBlur 'true' to show a coarse background first
+     */
+    public void setProgressiveBlur(boolean progressiveBlur) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setProgressiveBlur(progressiveBlur);
+        }
+    }
+
+    /**
+     * Method to blur only the region behind the panel, the screen above it gets a plain scrim.
+     * Capture and blur cost as much less as the panel is smaller than the screen.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_BLUR_PANEL_ONLY}
+     *
+     * @param panelOnly 'true' to blur only behind the panel
+     */
+    public void setBlurPanelOnly(boolean panelOnly) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setBlurPanelOnly(panelOnly);
+        }
+    }
+
+    /**
+     * Select the color of the scrim over the screen above the panel when only the region behind
+     * the panel is blurred, see {@link PickerUI#setBlurPanelOnly(boolean)}
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_BLUR_SCRIM_COLOR}
+     *
+     * @param color ARGB color, usually translucent
+     */
+    public void setBlurScrimColor(int color) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setBlurScrimColor(color);
+        }
+    }
+
+    /**
+     * Method to keep blurring the background while the panel is shown, so animations and changes
+     * behind the picker are seen
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_LIVE_BLUR}
+     *
+     * @param liveBlur 'true' to update the background while it's shown
+     */
+    public void setLiveBlur(boolean liveBlur) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setLiveBlur(liveBlur);
+        }
+    }
+
+    /**
+     * Method to set the maximum number of times per second the live background is updated
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_LIVE_BLUR_MAX_FPS}
+     *
+     * @param maxFps updates per second, between 1 and 60
+     */
+    public void setLiveBlurMaxFps(int maxFps) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setLiveBlurMaxFps(maxFps);
+        }
+    }
+
+    /**
+     * Set a callback listener for the timings of every opening of the panel: capture (downscale
+     * included), capture finish, blur, tint, bitmap upload, animation start, first bind of the
+     * list and total. See {@link PickerUIMetrics}.
+     *
+     * @param listener Callback instance, null to remove it.
+     */
+    public void setOnOpenTimingsListener(PickerUIMetrics.OnOpenTimingsListener listener) {
+        mMetrics.setOnOpenTimingsListener(listener);
+    }
+
+    /**
+     * Set a callback listener for the frames of every scroll of the list: frames over budget,
+     * the worst frame and what ran in each slow frame. Frames are only tracked while the list
+     * scrolls, and only from JellyBean on.
+     *
+     * @param listener Callback instance, null to stop tracking.
+     */
+    public void setScrollJankListener(ScrollJankListener listener) {
+        mPickerUIListView.setScrollJankListener(listener);
+    }
+
+    /**
+     * Timings of the last openings of the panel, to poll their percentiles, for example {@code
+     * getMetrics().getPercentile(PickerUIMetrics.PHASE_TOTAL, 95)}.
+     *
+     * @return the metrics of this picker
+     */
+    public PickerUIMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Blurs the screen ahead, so a following {@link PickerUI#slide()} can show the panel without
+     * waiting for the blur if the screen didn't change meanwhile. Call it when the user is about
+     * to open the picker, for instance when the field that opens it gets the focus.
+     */
+    public void prepare() {
+        if (mPickerUIBlurHelper != null && !isPanelShown()) {
+            mPickerUIBlurHelper.prepare();
+        }
+    }
+
+    /**
+     * Method to blur the screen ahead every time the main thread is idle after the picker is
+     * attached or hidden, see {@link PickerUI#prepare()}
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_PREPARE_ON_IDLE}
+     *
+     * @param prepareOnIdle 'true' to blur the screen when the main thread is idle
+     */
+    public void setPrepareOnIdle(boolean prepareOnIdle) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setPrepareOnIdle(prepareOnIdle);
+        }
+    }
+
     /**
      * Method to set the use of blur effect
      *
@@ -359,6 +510,119 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
         }
     }
 
+    /**
+     * Number of blurred backgrounds kept to open the picker again on a screen that didn't change
+     * without blurring.
+     *
+     * By default the size is {@link PickerUIBlur#DEFAULT_BLUR_CACHE_SIZE}
+     *
+     * @param maxEntries maximum number of backgrounds, 0 to disable the cache
+     */
+    public void setBlurCacheSize(int maxEntries) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setBlurCacheSize(maxEntries);
+        }
+    }
+
+    /**
+     * @return number of times the blurred background was served from the cache
+     */
+    public int getBlurCacheHitCount() {
+        return mPickerUIBlurHelper != null ? mPickerUIBlurHelper.getBlurResultCache()
+                .getHitCount() : 0;
+    }
+
+    /**
+     * @return number of times the background had to be blurred
+     */
+    public int getBlurCacheMissCount() {
+        return mPickerUIBlurHelper != null ? mPickerUIBlurHelper.getBlurResultCache()
+                .getMissCount() : 0;
+    }
+
+    /**
+     * Priority of the thread that blurs the background
+     *
+     * By default the priority is {@link PickerUIBlur#DEFAULT_BLUR_THREAD_PRIORITY}
+     *
+     * @param priority a priority of {@link android.os.Process}, from THREAD_PRIORITY_URGENT_DISPLAY
+     *                 to THREAD_PRIORITY_LOWEST
+     */
+    public void setBlurThreadPriority(int priority) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setBlurThreadPriority(priority);
+        }
+    }
+
+    /**
+     * Maximum memory kept to reuse the bitmaps of the blurred background between openings of the
+     * panel
+     *
+     * By default the size is {@link PickerUIBlur#DEFAULT_BITMAP_POOL_SIZE}
+     *
+     * @param maxBytes maximum size in bytes, 0 to disable the reuse
+     */
+    public void setBlurBitmapPoolSize(int maxBytes) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setBlurBitmapPoolSize(maxBytes);
+        }
+    }
+
+    /**
+     * Select the engine used to blur the background
+     *
+     * By default the engine is {@link PickerUIBlur#DEFAULT_BLUR_ENGINE}
+     *
+     * @param engine One of {@link PickerUIBlur#ENGINE_STACK}, {@link PickerUIBlur#ENGINE_BOX},
+     *               {@link PickerUIBlur#ENGINE_GAUSSIAN}, {@link
+     *               PickerUIBlur#ENGINE_RENDERSCRIPT}, {@link
+     *               PickerUIBlur#ENGINE_PARALLEL_STACK} or {@link
+     *               PickerUIBlur#ENGINE_DUAL_KAWASE}
+     */
+    public void setBlurEngine(int engine) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setBlurEngine(engine);
+        }
+    }
+
+    /**
+     * Use a custom engine to blur the background
+     *
+     * @param engine The engine that blurs the pixels of the snapshot
+     */
+    public void setBlurEngine(BlurEngine engine) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setBlurEngine(engine);
+        }
+    }
+
+    /**
+     * Select how the screen is captured before blurring it. {@link PickerUIBlur#CAPTURE_PICTURE}
+     * and {@link PickerUIBlur#CAPTURE_PIXEL_COPY} only start the capture on the main thread and
+     * finish it on the blur thread.
+     *
+     * By default the strategy is {@link PickerUIBlur#DEFAULT_CAPTURE_STRATEGY}
+     *
+     * @param strategy One of {@link PickerUIBlur#CAPTURE_DRAW}, {@link
+     *                 PickerUIBlur#CAPTURE_PICTURE} or {@link PickerUIBlur#CAPTURE_PIXEL_COPY}
+     */
+    public void setCaptureStrategy(int strategy) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setCaptureStrategy(strategy);
+        }
+    }
+
+    /**
+     * Use a custom strategy to capture the screen
+     *
+     * @param strategy The strategy that captures the screen into the snapshot
+     */
+    public void setCaptureStrategy(CaptureStrategy strategy) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setCaptureStrategy(strategy);
+        }
+    }
+
     /**
      * Apply custom down scale factor
      *
@@ -377,6 +641,9 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
      *
      * By default blur radius is set to {@link PickerUIBlur#MIN_BLUR_RADIUS}
      *
+     * Up to {@link PickerUIBlur#MAX_DUAL_KAWASE_RADIUS} with {@link
+     * PickerUIBlur#ENGINE_DUAL_KAWASE}, other engines blur with a radius of 25 at most.
+     *
      * @param radius The radius to blur the image, radius must be at least 1
      */
     public void setBlurRadius(int radius) {
@@ -396,6 +663,87 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
         }
     }
 
+    /**
+     * Blur with RGB_565 bitmaps, half the memory of ARGB_8888 for devices short of memory
+     *
+     * @param useRgb565 'true' to use RGB_565 bitmaps
+     */
+    public void setUseBlurRgb565(boolean useRgb565) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setUseRgb565(useRgb565);
+        }
+    }
+
+    /**
+     * Pick the down scale factor and the blur radius for each render from the size of the screen
+     * and the memory of the device, so the blur looks the same on every device. The factor and
+     * radius set with {@link PickerUI#setDownScaleFactor(float)} and {@link
+     * PickerUI#setBlurRadius(int)} are ignored meanwhile.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_AUTO_BLUR_QUALITY}
+     *
+     * @param autoQuality 'true' to pick them automatically
+     */
+    public void setUseBlurAutoQuality(boolean autoQuality) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setAutoQuality(autoQuality);
+        }
+    }
+
+    /**
+     * Lower the blur quality on later opens while the capture and the blur take longer than a
+     * target on this device, for instance 16 or 50 milliseconds, and raise it back when they are
+     * well under it.
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_BLUR_TARGET_LATENCY}
+     *
+     * @param millis target in milliseconds, 0 to keep the quality
+     */
+    public void setBlurTargetLatency(int millis) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setTargetLatency(millis);
+        }
+    }
+
+    /**
+     * Keep the blur quality reached for the target latency, so it isn't learned again when the
+     * app starts, see {@link PickerUI#setBlurTargetLatency(int)}
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_PERSIST_BLUR_QUALITY}
+     *
+     * @param persist 'true' to keep it in the SharedPreferences
+     */
+    public void setPersistBlurQuality(boolean persist) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setPersistQuality(persist);
+        }
+    }
+
+    /**
+     * Maximum memory, in bytes, of the blur buffers of one render with the automatic quality,
+     * see {@link PickerUI#setUseBlurAutoQuality(boolean)}
+     *
+     * By default is {@link PickerUIBlur#DEFAULT_BLUR_MEMORY_BUDGET}
+     *
+     * @param maxBytes maximum bytes, must be positive
+     */
+    public void setBlurMemoryBudget(int maxBytes) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setMemoryBudget(maxBytes);
+        }
+    }
+
+    /**
+     * Select the alpha of the blurred background
+     *
+     * @param alpha from 0, transparent, to 255, opaque
+     */
+    public void setBlurAlpha(int alpha) {
+        if (mPickerUIBlurHelper != null) {
+            mPickerUIBlurHelper.setBlurAlpha(alpha);
+        }
+    }
+
     /**
      * Sets the text color for the item of the center.
      *
@@ -443,10 +791,13 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
         setBackgroundPanel();
         setBackgroundLines();
         Animation bottomUp = AnimationUtils.loadAnimation(mContext, R.anim.picker_panel_bottom_up);
+        final long animationStart = System.nanoTime();
         mHiddenPanelPickerUI.startAnimation(bottomUp);
         bottomUp.setAnimationListener(new Animation.AnimationListener() {
             @Override
             public void onAnimationStart(Animation animation) {
+                mMetrics.record(PickerUIMetrics.PHASE_ANIMATION_START,
+                        System.nanoTime() - animationStart);
                 if (mPickerUIListView != null && mPickerUIListView.getPickerUIAdapter() != null) {
                     mPickerUIListView.getPickerUIAdapter().handleSelectEvent(position + 2);
                     mPickerUIListView.setSelection(position);
@@ -530,10 +881,13 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
         setItemsClickables(pickerUISettings.areItemsClickables());
         setUseBlur(pickerUISettings.isUseBlur());
         setUseRenderScript(pickerUISettings.isUseBlurRenderscript());
+        setBlurEngine(pickerUISettings.getBlurEngine());
         setAutoDismiss(pickerUISettings.isAutoDismiss());
         setBlurRadius(pickerUISettings.getBlurRadius());
         setDownScaleFactor(pickerUISettings.getBlurDownScaleFactor());
         setFilterColor(pickerUISettings.getBlurFilterColor());
+        setUseBlurRgb565(pickerUISettings.isUseBlurRgb565());
+        setUseBlurAutoQuality(pickerUISettings.isUseBlurAutoQuality());
     }
 
     /**
@@ -599,6 +953,19 @@ public class PickerUI extends RelativeLayout implements PickerUIBlurHelper.BlurF
         DOWN
     }
 
+    /**
+     * Interface for a callback with the frames of each scroll of the list.
+     */
+    public interface ScrollJankListener {
+
+        /**
+         * Callback when the list has settled after scrolling
+         *
+         * @param report frames of the scroll
+         */
+        void onScrollFinished(ScrollJankReport report);
+    }
+
     /**
      * Interface for a callback when the item has been clicked.
      */
@@ -1,6 +1,7 @@
 package com.dpizarro.uipicker.library.picker;
 
 import com.dpizarro.uipicker.library.R;
+import com.dpizarro.uipicker.library.metrics.PickerUITrace;
 
 import android.content.Context;
 import android.util.SparseArray;
@@ -50,6 +51,7 @@ class PickerUIAdapter extends ArrayAdapter<String> {
     private int mColorTextCenter = -1;
     private int mColorTextNoCenter = -1;
     private boolean isInEditMode = false;
+    private ScrollJankTracker mScrollJankTracker;
 
     /**
      * Constructor to use the adapter.
@@ -77,7 +79,18 @@ class PickerUIAdapter extends ArrayAdapter<String> {
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
+        PickerUITrace.begin(PickerUITrace.GET_VIEW);
+        if (mScrollJankTracker != null) {
+            mScrollJankTracker.onBind();
+        }
+        try {
+            return bindView(position, convertView, parent);
+        } finally {
+            PickerUITrace.end();
+        }
+    }
 
+    private View bindView(int position, View convertView, ViewGroup parent) {
         if (convertView == null) {
             LayoutInflater vi = (LayoutInflater) mContext.getSystemService(
                     Context.LAYOUT_INFLATER_SERVICE);
@@ -201,8 +214,25 @@ class PickerUIAdapter extends ArrayAdapter<String> {
      * @param position this is the position in the center of the list
      */
     public void handleSelectEvent(int position) {
-        this.centerPosition = position;
-        this.notifyDataSetChanged();
+        PickerUITrace.begin(PickerUITrace.SELECT);
+        try {
+            if (mScrollJankTracker != null) {
+                mScrollJankTracker.onNotifyDataSetChanged();
+            }
+            this.centerPosition = position;
+            this.notifyDataSetChanged();
+        } finally {
+            PickerUITrace.end();
+        }
+    }
+
+    /**
+     * Set the tracker counting the rows bound and the calls to notifyDataSetChanged.
+     *
+     * @param tracker the tracker of the list, null if there is none
+     */
+    void setScrollJankTracker(ScrollJankTracker tracker) {
+        mScrollJankTracker = tracker;
     }
 
     /**
@@ -1,6 +1,8 @@
 package com.dpizarro.uipicker.library.picker;
 
 import com.dpizarro.uipicker.library.R;
+import com.dpizarro.uipicker.library.metrics.PickerUIMetrics;
+import com.dpizarro.uipicker.library.metrics.PickerUITrace;
 
 import android.app.Activity;
 import android.content.Context;
@@ -40,6 +42,8 @@ class PickerUIListView extends ListView {
     private int firstItem, scrollTop;
     private List<String> items;
     private int which;
+    private PickerUIMetrics mMetrics;
+    private ScrollJankTracker mScrollJankTracker;
 
     /**
      * Default constructor
@@ -111,6 +115,58 @@ class PickerUIListView extends ListView {
         setSelection(entriesList.size() / 2);
     }
 
+    /**
+     * Set where the time of the first layout of the list, when the panel is shown, is recorded.
+     *
+     * @param metrics the metrics of the picker, null to stop recording
+     */
+    void setMetrics(PickerUIMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * The rows are bound here, see {@link PickerUIMetrics#PHASE_FIRST_BIND}.
+     */
+    @Override
+    protected void layoutChildren() {
+        long start = System.nanoTime();
+        super.layoutChildren();
+        if (mMetrics != null) {
+            mMetrics.record(PickerUIMetrics.PHASE_FIRST_BIND, System.nanoTime() - start);
+        }
+        if (mScrollJankTracker != null) {
+            mScrollJankTracker.onLayout();
+        }
+    }
+
+    /**
+     * Set a callback listener for the frames of every scroll, see {@link ScrollJankTracker}.
+     * Needs a {@link android.view.Choreographer}, it does nothing before JellyBean.
+     *
+     * @param listener Callback instance, null to stop tracking.
+     */
+    void setScrollJankListener(PickerUI.ScrollJankListener listener) {
+        if (mScrollJankTracker != null) {
+            mScrollJankTracker.cancel();
+            mScrollJankTracker = null;
+        }
+        if (listener != null
+                && android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.JELLY_BEAN) {
+            mScrollJankTracker = new ScrollJankTracker(getContext(), listener);
+        }
+        if (mPickerUIAdapter != null) {
+            mPickerUIAdapter.setScrollJankTracker(mScrollJankTracker);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mScrollJankTracker != null) {
+            mScrollJankTracker.cancel();
+        }
+    }
+
     private void init(List<String> items) {
         this.items = items;
 
@@ -138,13 +194,25 @@ class PickerUIListView extends ListView {
         setOnScrollListener(new OnScrollListener() {
             @Override
             public void onScrollStateChanged(AbsListView view, int scrollState) {
+                if (mScrollJankTracker != null && scrollState != SCROLL_STATE_IDLE) {
+                    mScrollJankTracker.start();
+                }
                 if (scrollState == 0) {
-                    getItemInListCenter();
-                    if (scrollTop < -ROW_HEIGHT) {
-                        mPickerUIAdapter.handleSelectEvent(firstItem + 1 + 2);
-                        selectListItem(firstItem + 1);
-                    } else {
-                        selectListItem(firstItem);
+                    PickerUITrace.begin(PickerUITrace.SCROLL_SETTLE);
+                    try {
+                        getItemInListCenter();
+                        if (scrollTop < -ROW_HEIGHT) {
+                            mPickerUIAdapter.handleSelectEvent(firstItem + 1 + 2);
+                            selectListItem(firstItem + 1);
+                        } else {
+                            selectListItem(firstItem);
+                        }
+                    } finally {
+                        // The listener of the selection may throw
+                        PickerUITrace.end();
+                    }
+                    if (mScrollJankTracker != null) {
+                        mScrollJankTracker.stop();
                     }
                 }
             }
@@ -189,6 +257,7 @@ class PickerUIListView extends ListView {
         this.which = idRequestPickerUI;
         mPickerUIAdapter = new PickerUIAdapter(context, R.layout.pickerui_item, items, position,
                 itemsClickables, false);
+        mPickerUIAdapter.setScrollJankTracker(mScrollJankTracker);
         setAdapter(mPickerUIAdapter);
     }
 
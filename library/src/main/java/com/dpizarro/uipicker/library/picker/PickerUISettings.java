@@ -55,6 +55,9 @@ public class PickerUISettings implements Parcelable {
     private int mBlurFilterColor;
     private boolean mUseBlur;
     private boolean mUseBlurRenderscript;
+    private int mBlurEngine;
+    private boolean mUseBlurRgb565;
+    private boolean mUseBlurAutoQuality;
 
     private PickerUISettings(Builder builder) {
         setItems(builder.mItems);
@@ -66,9 +69,12 @@ public class PickerUISettings implements Parcelable {
         setAutoDismiss(builder.mAutoDismiss);
         setUseBlur(builder.mUseBlur);
         setUseBlurRenderscript(builder.mUseBlurRenderscript);
+        setBlurEngine(builder.mBlurEngine);
         setBlurDownScaleFactor(builder.mDownScaleFactor);
         setBlurRadius(builder.mRadius);
         setBlurFilterColor(builder.mFilterColor);
+        setUseBlurRgb565(builder.mUseBlurRgb565);
+        setUseBlurAutoQuality(builder.mUseBlurAutoQuality);
     }
 
     private PickerUISettings(Parcel in) {
@@ -84,6 +90,9 @@ public class PickerUISettings implements Parcelable {
         this.mBlurFilterColor = in.readInt();
         this.mUseBlur = in.readByte() != 0;
         this.mUseBlurRenderscript = in.readByte() != 0;
+        this.mBlurEngine = in.readInt();
+        this.mUseBlurRgb565 = in.readByte() != 0;
+        this.mUseBlurAutoQuality = in.readByte() != 0;
     }
 
     public List<String> getItems() {
@@ -158,6 +167,30 @@ public class PickerUISettings implements Parcelable {
         mUseBlurRenderscript = useBlurRenderscript;
     }
 
+    public int getBlurEngine() {
+        return mBlurEngine;
+    }
+
+    void setBlurEngine(int blurEngine) {
+        mBlurEngine = blurEngine;
+    }
+
+    public boolean isUseBlurRgb565() {
+        return mUseBlurRgb565;
+    }
+
+    void setUseBlurRgb565(boolean useBlurRgb565) {
+        mUseBlurRgb565 = useBlurRgb565;
+    }
+
+    public boolean isUseBlurAutoQuality() {
+        return mUseBlurAutoQuality;
+    }
+
+    void setUseBlurAutoQuality(boolean useBlurAutoQuality) {
+        mUseBlurAutoQuality = useBlurAutoQuality;
+    }
+
     public float getBlurDownScaleFactor() {
         return mBlurDownScaleFactor;
     }
@@ -201,6 +234,9 @@ public class PickerUISettings implements Parcelable {
         dest.writeInt(this.mBlurFilterColor);
         dest.writeByte(mUseBlur ? (byte) 1 : (byte) 0);
         dest.writeByte(mUseBlurRenderscript ? (byte) 1 : (byte) 0);
+        dest.writeInt(this.mBlurEngine);
+        dest.writeByte(mUseBlurRgb565 ? (byte) 1 : (byte) 0);
+        dest.writeByte(mUseBlurAutoQuality ? (byte) 1 : (byte) 0);
     }
 
     public static final class Builder {
@@ -212,6 +248,9 @@ public class PickerUISettings implements Parcelable {
         private int mLinesColor                 = R.color.lines_panel_pickerui;
         private boolean mUseBlur                = PickerUIBlur.DEFAULT_USE_BLUR;
         private boolean mUseBlurRenderscript    = PickerUIBlur.DEFAULT_USE_BLUR_RENDERSCRIPT;
+        private int mBlurEngine                 = PickerUIBlur.DEFAULT_BLUR_ENGINE;
+        private boolean mUseBlurRgb565          = PickerUIBlur.DEFAULT_USE_BLUR_RGB_565;
+        private boolean mUseBlurAutoQuality     = PickerUIBlur.DEFAULT_AUTO_BLUR_QUALITY;
         private boolean mItemsClickables        = DEFAULT_ITEMS_CLICKABLES;
         private float mDownScaleFactor          = PickerUIBlur.DEFAULT_DOWNSCALE_FACTOR;
         private int mRadius                     = PickerUIBlur.DEFAULT_BLUR_RADIUS;
@@ -223,6 +262,7 @@ public class PickerUISettings implements Parcelable {
 
         private Builder(Builder builder) {
             mUseBlurRenderscript = builder.mUseBlurRenderscript;
+            mBlurEngine = builder.mBlurEngine;
             mUseBlur = builder.mUseBlur;
         }
 
@@ -278,6 +318,24 @@ public class PickerUISettings implements Parcelable {
 
         public Builder withUseBlurRenderscript(boolean mUseBlurRenderscript) {
             this.mUseBlurRenderscript = mUseBlurRenderscript;
+            this.mBlurEngine = mUseBlurRenderscript ? PickerUIBlur.ENGINE_RENDERSCRIPT
+                    : PickerUIBlur.ENGINE_PARALLEL_STACK;
+            return this;
+        }
+
+        public Builder withBlurEngine(int mBlurEngine) {
+            this.mBlurEngine = mBlurEngine;
+            this.mUseBlurRenderscript = mBlurEngine == PickerUIBlur.ENGINE_RENDERSCRIPT;
+            return this;
+        }
+
+        public Builder withUseBlurRgb565(boolean mUseBlurRgb565) {
+            this.mUseBlurRgb565 = mUseBlurRgb565;
+            return this;
+        }
+
+        public Builder withUseBlurAutoQuality(boolean mUseBlurAutoQuality) {
+            this.mUseBlurAutoQuality = mUseBlurAutoQuality;
             return this;
         }
 
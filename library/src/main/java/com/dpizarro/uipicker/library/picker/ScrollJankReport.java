@@ -0,0 +1,160 @@
+package com.dpizarro.uipicker.library.picker;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Frames of one scroll of the picker list, from the first touch or fling until it settles. A
+ * frame is slow when it took more than one and a half times the frame budget of the display, so
+ * at least one vsync was missed.
+ */
+public final class ScrollJankReport {
+
+    private final long mFrameBudget;
+    private final int mFrameCount;
+    private final int mSlowFrameCount;
+    private final long mWorstFrameTime;
+    private final int mBindCount;
+    private final int mNotifyCount;
+    private final int mLayoutCount;
+    private final SlowFrame[] mSlowFrames;
+
+    ScrollJankReport(long frameBudget, int frameCount, int slowFrameCount, long worstFrameTime,
+            int bindCount, int notifyCount, int layoutCount, SlowFrame[] slowFrames) {
+        mFrameBudget = frameBudget;
+        mFrameCount = frameCount;
+        mSlowFrameCount = slowFrameCount;
+        mWorstFrameTime = worstFrameTime;
+        mBindCount = bindCount;
+        mNotifyCount = notifyCount;
+        mLayoutCount = layoutCount;
+        mSlowFrames = slowFrames;
+    }
+
+    /**
+     * @return the time between two frames of the display, in nanoseconds
+     */
+    public long getFrameBudget() {
+        return mFrameBudget;
+    }
+
+    /**
+     * @return number of frames while scrolling
+     */
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    /**
+     * @return number of frames over budget
+     */
+    public int getSlowFrameCount() {
+        return mSlowFrameCount;
+    }
+
+    /**
+     * @return the longest frame in nanoseconds
+     */
+    public long getWorstFrameTime() {
+        return mWorstFrameTime;
+    }
+
+    /**
+     * @return number of rows bound while scrolling
+     */
+    public int getBindCount() {
+        return mBindCount;
+    }
+
+    /**
+     * @return number of calls to notifyDataSetChanged while scrolling
+     */
+    public int getNotifyCount() {
+        return mNotifyCount;
+    }
+
+    /**
+     * @return number of layouts of the list while scrolling
+     */
+    public int getLayoutCount() {
+        return mLayoutCount;
+    }
+
+    /**
+     * @return the first slow frames, at most {@link ScrollJankTracker#MAX_SLOW_FRAMES}
+     */
+    public SlowFrame[] getSlowFrames() {
+        return mSlowFrames.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "ScrollJankReport{frames=" + mFrameCount + ", slow=" + mSlowFrameCount
+                + ", worstMs=" + mWorstFrameTime / 1000000f + ", binds=" + mBindCount
+                + ", notifies=" + mNotifyCount + ", layouts=" + mLayoutCount + "}";
+    }
+
+    /**
+     * A frame over budget and what the list did during it.
+     */
+    public static final class SlowFrame {
+
+        private final long mFrameTime;
+        private final int mBindCount;
+        private final int mNotifyCount;
+        private final int mLayoutCount;
+
+        SlowFrame(long frameTime, int bindCount, int notifyCount, int layoutCount) {
+            mFrameTime = frameTime;
+            mBindCount = bindCount;
+            mNotifyCount = notifyCount;
+            mLayoutCount = layoutCount;
+        }
+
+        /**
+         * @return duration of the frame in nanoseconds
+         */
+        public long getFrameTime() {
+            return mFrameTime;
+        }
+
+        /**
+         * @return number of rows bound during the frame
+         */
+        public int getBindCount() {
+            return mBindCount;
+        }
+
+        /**
+         * @return number of calls to notifyDataSetChanged during the frame
+         */
+        public int getNotifyCount() {
+            return mNotifyCount;
+        }
+
+        /**
+         * @return number of layouts of the list during the frame
+         */
+        public int getLayoutCount() {
+            return mLayoutCount;
+        }
+
+        @Override
+        public String toString() {
+            return "SlowFrame{ms=" + mFrameTime / 1000000f + ", binds=" + mBindCount
+                    + ", notifies=" + mNotifyCount + ", layouts=" + mLayoutCount + "}";
+        }
+    }
+}
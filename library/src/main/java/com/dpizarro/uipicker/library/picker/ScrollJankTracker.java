@@ -0,0 +1,164 @@
+package com.dpizarro.uipicker.library.picker;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.WindowManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Copyright (C) 2015 David Pizarro
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Counts the frames of the picker list while it scrolls with a {@link Choreographer} callback,
+ * and what ran in each of them: rows bound, notifyDataSetChanged calls and layouts. The work
+ * counted between two callbacks is the work of the frame between them. Only runs while scrolling,
+ * the callback is removed when the list settles.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+class ScrollJankTracker implements Choreographer.FrameCallback {
+
+    /**
+     * Slow frames kept in a report, the count goes on after that
+     */
+    static final int MAX_SLOW_FRAMES = 32;
+
+    /**
+     * A frame is slow over this many times the budget, the rest is vsync jitter
+     */
+    private static final float SLOW_FRAME_FACTOR = 1.5f;
+
+    private static final float DEFAULT_REFRESH_RATE = 60;
+
+    private final PickerUI.ScrollJankListener mListener;
+    private final long mFrameBudget;
+    private final long mSlowFrameTime;
+    private final List<ScrollJankReport.SlowFrame> mSlowFrames =
+            new ArrayList<ScrollJankReport.SlowFrame>();
+
+    private boolean mRunning;
+    private long mLastFrameTime;
+    private int mFrameCount;
+    private int mSlowFrameCount;
+    private long mWorstFrameTime;
+    private int mBindCount, mNotifyCount, mLayoutCount;
+    private int mFrameBinds, mFrameNotifies, mFrameLayouts;
+
+    ScrollJankTracker(Context context, PickerUI.ScrollJankListener listener) {
+        mListener = listener;
+        float refreshRate = DEFAULT_REFRESH_RATE;
+        WindowManager windowManager = (WindowManager) context
+                .getSystemService(Context.WINDOW_SERVICE);
+        if (windowManager != null) {
+            Display display = windowManager.getDefaultDisplay();
+            if (display != null && display.getRefreshRate() >= 1) {
+                refreshRate = display.getRefreshRate();
+            }
+        }
+        mFrameBudget = (long) (1000000000L / refreshRate);
+        mSlowFrameTime = (long) (mFrameBudget * SLOW_FRAME_FACTOR);
+    }
+
+    /**
+     * The list started scrolling, does nothing if it is already tracked.
+     */
+    void start() {
+        if (mRunning) {
+            return;
+        }
+        mRunning = true;
+        mLastFrameTime = 0;
+        mFrameCount = 0;
+        mSlowFrameCount = 0;
+        mWorstFrameTime = 0;
+        mBindCount = mNotifyCount = mLayoutCount = 0;
+        mFrameBinds = mFrameNotifies = mFrameLayouts = 0;
+        mSlowFrames.clear();
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * The list settled, the report is handed to the listener.
+     */
+    void stop() {
+        if (!mRunning) {
+            return;
+        }
+        cancel();
+        mBindCount += mFrameBinds;
+        mNotifyCount += mFrameNotifies;
+        mLayoutCount += mFrameLayouts;
+        mListener.onScrollFinished(new ScrollJankReport(mFrameBudget, mFrameCount,
+                mSlowFrameCount, mWorstFrameTime, mBindCount, mNotifyCount, mLayoutCount,
+                mSlowFrames.toArray(new ScrollJankReport.SlowFrame[mSlowFrames.size()])));
+    }
+
+    /**
+     * Stops tracking without reporting.
+     */
+    void cancel() {
+        if (mRunning) {
+            mRunning = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    void onBind() {
+        if (mRunning) {
+            mFrameBinds++;
+        }
+    }
+
+    void onNotifyDataSetChanged() {
+        if (mRunning) {
+            mFrameNotifies++;
+        }
+    }
+
+    void onLayout() {
+        if (mRunning) {
+            mFrameLayouts++;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) {
+            return;
+        }
+        if (mLastFrameTime != 0) {
+            long frameTime = frameTimeNanos - mLastFrameTime;
+            mFrameCount++;
+            mWorstFrameTime = Math.max(mWorstFrameTime, frameTime);
+            if (frameTime > mSlowFrameTime) {
+                mSlowFrameCount++;
+                if (mSlowFrames.size() < MAX_SLOW_FRAMES) {
+                    mSlowFrames.add(new ScrollJankReport.SlowFrame(frameTime, mFrameBinds,
+                            mFrameNotifies, mFrameLayouts));
+                }
+            }
+        }
+        mBindCount += mFrameBinds;
+        mNotifyCount += mFrameNotifies;
+        mLayoutCount += mFrameLayouts;
+        mFrameBinds = mFrameNotifies = mFrameLayouts = 0;
+        mLastFrameTime = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}